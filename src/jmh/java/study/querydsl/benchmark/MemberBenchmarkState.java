@@ -0,0 +1,93 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.dto.MemberCreateDto;
+import study.querydsl.repository.MemberBulkRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 임베디드 H2(Oracle 모드) 위에 JPA 계층을 띄우고 InitMember 와 같은 모양으로 데이터를 넣는다.
+ * (teamA/teamB 에 번갈아 소속, 나이는 0~99)
+ */
+@State(Scope.Benchmark)
+public class MemberBenchmarkState {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate readOnlyTransaction;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> args = new ArrayList<>(Arrays.asList("--spring.profiles.active=bench",
+                "--spring.main.web-application-type=none",
+                "--spring.datasource.url=jdbc:h2:mem:bench;MODE=Oracle;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.jpa.properties.hibernate.hbm2ddl.import_files=db/member-index-h2.sql",
+                "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                "--decorator.datasource.enabled=false",
+                "--querydsl.warmup.enabled=false",
+                "--logging.level.root=warn",
+                "--logging.level.org.hibernate.SQL=warn",
+                "--logging.level.org.hibernate.type=warn"));
+        args.addAll(Arrays.asList(extraArgs()));
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .run(args.toArray(new String[0]));
+
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+
+        seed();
+    }
+
+    // 하위 State 에서 설정을 바꿔 비교할 때 사용한다.
+    protected String[] extraArgs() {
+        return new String[0];
+    }
+
+    private void seed() {
+        MemberBulkRepository bulkRepository = context.getBean(MemberBulkRepository.class);
+        List<MemberCreateDto> chunk = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            chunk.add(new MemberCreateDto("member" + i, i % 100, i % 2 == 0 ? "teamA" : "teamB"));
+            if (chunk.size() == 10_000) {
+                bulkRepository.saveAll(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            bulkRepository.saveAll(chunk);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public <T> T readOnly(Supplier<T> action) {
+        return readOnlyTransaction.execute(status -> action.get());
+    }
+}
@@ -0,0 +1,89 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberQueryRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberTestRepository;
+
+import java.util.List;
+
+/**
+ * 같은 검색 조건으로 리포지토리 조회 방식별 처리량/할당량을 비교한다.
+ */
+@State(Scope.Benchmark)
+public class MemberRepositoryBenchmark {
+
+    private MemberJpaRepository memberJpaRepository;
+    private MemberQueryRepository memberQueryRepository;
+    private MemberRepository memberRepository;
+    private MemberTestRepository memberTestRepository;
+    private MemberSearchCondition condition;
+    private PageRequest pageRequest;
+
+    @Setup(Level.Trial)
+    public void setUp(MemberBenchmarkState state) {
+        memberJpaRepository = state.getBean(MemberJpaRepository.class);
+        memberQueryRepository = state.getBean(MemberQueryRepository.class);
+        memberRepository = state.getBean(MemberRepository.class);
+        memberTestRepository = state.getBean(MemberTestRepository.class);
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(60);
+
+        pageRequest = PageRequest.of(5, 20);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> search(MemberBenchmarkState state) {
+        return state.readOnly(() -> memberJpaRepository.search(condition));
+    }
+
+    // search(SQL 직접 매핑) 과 gc.alloc.rate.norm 을 비교한다.
+    @Benchmark
+    public List<MemberTeamDto> searchByJpql(MemberBenchmarkState state) {
+        return state.readOnly(() -> memberQueryRepository.search(condition));
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchByBuilder(MemberBenchmarkState state) {
+        return state.readOnly(() -> memberJpaRepository.searchByBuilder(condition));
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageSimple(MemberBenchmarkState state) {
+        return state.readOnly(() -> memberRepository.searchPageSimple(condition, pageRequest));
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplex(MemberBenchmarkState state) {
+        return state.readOnly(() -> memberRepository.searchPageComplex(condition, pageRequest));
+    }
+
+    @Benchmark
+    public Page<Member> applyPagination(MemberBenchmarkState state) {
+        return state.readOnly(() -> memberTestRepository.applyPagination(condition, pageRequest));
+    }
+
+    @Benchmark
+    public Page<Member> applyPagination2(MemberBenchmarkState state) {
+        return state.readOnly(() -> memberTestRepository.applyPagination2(condition, pageRequest));
+    }
+
+    // applyPagination2 와 같은 페이지를 id 먼저 고르고 읽는다.
+    @Benchmark
+    public Page<Member> applyDeferredPagination(MemberBenchmarkState state) {
+        return state.readOnly(() -> memberTestRepository.applyDeferredPagination(condition, pageRequest));
+    }
+}
@@ -0,0 +1,58 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+
+/**
+ * /v2/members 부하 테스트 (응답 캐시를 거치지 않도록 /v2 가 호출하는 searchPageSimple 을 직접 호출한다)
+ * 동시 요청 수를 풀 크기보다 크게 두고 querydsl.datasource 튜닝 적용 전(Hikari 기본값)/후 처리량을 비교한다.
+ * H2 에서는 풀 크기 효과만 보인다. (statement cache/row prefetch 는 Oracle 드라이버에만 적용된다)
+ * 커넥션 대기 시간은 gc 프로파일러 대신 hikaricp.connections.acquire 메트릭으로 본다.
+ */
+@State(Scope.Benchmark)
+public class PoolTuningBenchmark {
+
+    private MemberRepository memberRepository;
+    private MemberSearchCondition condition;
+    private PageRequest pageRequest;
+
+    @State(Scope.Benchmark)
+    public static class PoolState extends MemberBenchmarkState {
+
+        @Param({"false", "true"})
+        public boolean tuned;
+
+        @Override
+        protected String[] extraArgs() {
+            return new String[]{"--querydsl.datasource.enabled=" + tuned};
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp(PoolState state) {
+        memberRepository = state.getBean(MemberRepository.class);
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(60);
+
+        pageRequest = PageRequest.of(5, 20);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Page<MemberTeamDto> searchMemberV2(PoolState state) {
+        return memberRepository.searchPageSimple(condition, pageRequest);
+    }
+}
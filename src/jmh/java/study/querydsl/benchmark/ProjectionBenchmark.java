@@ -0,0 +1,67 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * QuerydslBasicTest 의 DTO 조회 방식(setter, field, 생성자, @QueryProjection) 비교
+ */
+@State(Scope.Benchmark)
+public class ProjectionBenchmark {
+
+    private JPAQueryFactory queryFactory;
+
+    @Setup(Level.Trial)
+    public void setUp(MemberBenchmarkState state) {
+        queryFactory = state.getBean(JPAQueryFactory.class);
+    }
+
+    @Benchmark
+    public List<MemberDto> bean(MemberBenchmarkState state) {
+        return state.readOnly(() -> queryFactory
+                .select(Projections.bean(MemberDto.class,
+                        member.username,
+                        member.age))
+                .from(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> fields(MemberBenchmarkState state) {
+        return state.readOnly(() -> queryFactory
+                .select(Projections.fields(MemberDto.class,
+                        member.username,
+                        member.age))
+                .from(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> constructor(MemberBenchmarkState state) {
+        return state.readOnly(() -> queryFactory
+                .select(Projections.constructor(MemberDto.class,
+                        member.username,
+                        member.age))
+                .from(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> queryProjection(MemberBenchmarkState state) {
+        return state.readOnly(() -> queryFactory
+                .select(new QMemberDto(member.username, member.age))
+                .from(member)
+                .fetch());
+    }
+}
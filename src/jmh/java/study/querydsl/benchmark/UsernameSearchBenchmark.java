@@ -0,0 +1,101 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * username 검색 방식별 비교
+ * UsernameMatch(범위 조건, db/member-index-h2.sql 의 member_username_idx) 와
+ * 쿼리 시점에 like / lower() 를 거는 방식(QuerydslBasicTest.sqlFunction2)을 비교한다.
+ * 시작할 때 H2 EXPLAIN 결과를 로그로 남겨서 어떤 쿼리가 인덱스를 타는지 보여준다.
+ */
+@State(Scope.Benchmark)
+public class UsernameSearchBenchmark {
+
+    // jmh 소스셋에는 lombok annotation processor 가 없으므로 직접 만든다.
+    private static final Logger log = LoggerFactory.getLogger(UsernameSearchBenchmark.class);
+
+    private MemberJpaRepository memberJpaRepository;
+    private JPAQueryFactory queryFactory;
+    private MemberSearchCondition exact;
+    private MemberSearchCondition prefix;
+    private MemberSearchCondition ignoreCase;
+
+    @Setup(Level.Trial)
+    public void setUp(MemberBenchmarkState state) {
+        memberJpaRepository = state.getBean(MemberJpaRepository.class);
+        queryFactory = state.getBean(JPAQueryFactory.class);
+
+        exact = conditionOf("member123", UsernameMatch.EXACT);
+        prefix = conditionOf("member123", UsernameMatch.PREFIX);
+        ignoreCase = conditionOf("MEMBER123", UsernameMatch.IGNORE_CASE);
+
+        EntityManager em = state.getBean(EntityManager.class);
+        state.readOnly(() -> {
+            explain(em, "select * from member where username >= 'member123' and username < 'member124'");
+            explain(em, "select * from member where username like 'member123%'");
+            explain(em, "select * from member where lower(username) like 'member123%'");
+            return null;
+        });
+    }
+
+    private MemberSearchCondition conditionOf(String username, UsernameMatch match) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        condition.setUsernameMatch(match);
+        return condition;
+    }
+
+    private void explain(EntityManager em, String sql) {
+        Object plan = em.createNativeQuery("explain " + sql).getSingleResult();
+        log.info("explain {}\n{}", sql, plan);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> exact(MemberBenchmarkState state) {
+        return state.readOnly(() -> memberJpaRepository.search(exact));
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> prefixRange(MemberBenchmarkState state) {
+        return state.readOnly(() -> memberJpaRepository.search(prefix));
+    }
+
+    @Benchmark
+    public List<String> prefixLike(MemberBenchmarkState state) {
+        return state.readOnly(() -> queryFactory
+                .select(member.username)
+                .from(member)
+                .where(member.username.startsWith("member123"))
+                .fetch());
+    }
+
+    @Benchmark
+    public List<String> prefixLowerLike(MemberBenchmarkState state) {
+        return state.readOnly(() -> queryFactory
+                .select(member.username)
+                .from(member)
+                .where(member.username.startsWithIgnoreCase("MEMBER123"))
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> ignoreCase(MemberBenchmarkState state) {
+        return state.readOnly(() -> memberJpaRepository.search(ignoreCase));
+    }
+}
@@ -0,0 +1,4 @@
+-- H2 는 함수 기반 인덱스가 없으므로 username B-tree 인덱스만 만든다. (IGNORE_CASE 는 H2 에서 full scan)
+create index member_username_idx on member (username)
+-- MemberTeamDto 조회용 커버링 인덱스
+create index member_team_age_username_idx on member (team_id, age, username, member_id)
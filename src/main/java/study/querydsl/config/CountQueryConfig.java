@@ -0,0 +1,24 @@
+package study.querydsl.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import study.querydsl.repository.support.CountCacheProperties;
+import study.querydsl.repository.support.CountQueryProperties;
+
+@Configuration
+@EnableConfigurationProperties({CountQueryProperties.class, CountCacheProperties.class})
+public class CountQueryConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor countQueryExecutor(CountQueryProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getCorePoolSize());
+        executor.setMaxPoolSize(properties.getMaxPoolSize());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setThreadNamePrefix("count-query-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
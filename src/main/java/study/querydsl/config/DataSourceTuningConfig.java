@@ -0,0 +1,46 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import study.querydsl.repository.support.DataSourceTuningProperties;
+import study.querydsl.repository.support.HikariTuner;
+
+@Configuration
+@EnableConfigurationProperties(DataSourceTuningProperties.class)
+public class DataSourceTuningConfig {
+
+    /*
+     spring.datasource.hikari 바인딩(PriorityOrdered) 이 끝난 뒤, p6spy 로 감싸지기 전(before initialization)에 튜닝한다.
+     */
+    @Bean
+    public static BeanPostProcessor hikariTuningPostProcessor(ObjectProvider<HikariTuner> hikariTuner) {
+        return new HikariTuningPostProcessor(hikariTuner);
+    }
+
+    static class HikariTuningPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final ObjectProvider<HikariTuner> hikariTuner;
+
+        HikariTuningPostProcessor(ObjectProvider<HikariTuner> hikariTuner) {
+            this.hikariTuner = hikariTuner;
+        }
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            if (bean instanceof HikariDataSource) {
+                hikariTuner.getObject().tune((HikariDataSource) bean);
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
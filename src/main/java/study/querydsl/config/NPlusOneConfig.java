@@ -0,0 +1,19 @@
+package study.querydsl.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.repository.support.NPlusOneDetector;
+import study.querydsl.repository.support.NPlusOneProperties;
+
+@Configuration
+@EnableConfigurationProperties(NPlusOneProperties.class)
+public class NPlusOneConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer nPlusOneStatementInspector(NPlusOneDetector detector) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, detector);
+    }
+}
@@ -0,0 +1,10 @@
+package study.querydsl.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.repository.support.TeamStatsProperties;
+
+@Configuration
+@EnableConfigurationProperties(TeamStatsProperties.class)
+public class TeamStatsConfig {
+}
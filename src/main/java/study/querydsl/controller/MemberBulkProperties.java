@@ -0,0 +1,23 @@
+package study.querydsl.controller;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+/**
+ * 대량 회원 등록(/v1/members/bulk) 설정
+ */
+@Getter @Setter
+@Validated
+@Component
+@ConfigurationProperties(prefix = "querydsl.bulk")
+public class MemberBulkProperties {
+
+    // 한 요청(한 트랜잭션)에 등록할 수 있는 최대 회원 수, 넘으면 413
+    @Min(1)
+    private int maxRequestSize = 10_000;
+}
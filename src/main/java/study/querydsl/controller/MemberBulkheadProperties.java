@@ -0,0 +1,38 @@
+package study.querydsl.controller;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 회원 검색 엔드포인트별 bulkhead(전용 스레드 풀) 설정
+ * 스레드 수와 대기열이 모두 차면 요청을 거절(503)한다.
+ * 합계는 커넥션 풀 크기를 넘지 않게 잡는다.
+ */
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "querydsl.bulkhead")
+public class MemberBulkheadProperties {
+
+    // 페이징 없는 검색, export 는 무거우므로 작게 잡는다.
+    private Pool v1 = new Pool(2, 10);
+    private Pool v2 = new Pool(4, 50);
+    private Pool v3 = new Pool(4, 50);
+    private Pool export = new Pool(2, 0);
+
+    @Getter @Setter
+    public static class Pool {
+
+        private int threads;
+        private int queueCapacity;
+
+        public Pool() {
+        }
+
+        public Pool(int threads, int queueCapacity) {
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.support.NPlusOneDetector;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 엔드포인트별 전용 스레드 풀
+ * 느린 비동기 검색(/v1/members/async, export)이 Tomcat 워커와 다른 엔드포인트의 스레드를 잡고 있지 않도록 나눈다.
+ * - executor.* (name=bulkhead.엔드포인트) : 풀 크기, active, 대기열 길이
+ * - querydsl.bulkhead.rejected (bulkhead=엔드포인트) : 거절된 요청 수
+ * 작업은 제출한 요청의 N+1 감지 범위(NPlusOneDetector)를 이어받아 실행된다.
+ */
+@Component
+public class MemberBulkheads implements DisposableBean {
+
+    public static final String V1 = "v1";
+    public static final String V2 = "v2";
+    public static final String V3 = "v3";
+    public static final String EXPORT = "export";
+
+    public static final String REJECTED = "querydsl.bulkhead.rejected";
+
+    private final Map<String, ThreadPoolTaskExecutor> executors = new LinkedHashMap<>();
+
+    public MemberBulkheads(MemberBulkheadProperties properties, MeterRegistry registry, NPlusOneDetector detector) {
+        executors.put(V1, create(V1, properties.getV1(), registry, detector));
+        executors.put(V2, create(V2, properties.getV2(), registry, detector));
+        executors.put(V3, create(V3, properties.getV3(), registry, detector));
+        executors.put(EXPORT, create(EXPORT, properties.getExport(), registry, detector));
+    }
+
+    public ThreadPoolTaskExecutor get(String name) {
+        return executors.get(name);
+    }
+
+    private ThreadPoolTaskExecutor create(String name, MemberBulkheadProperties.Pool pool, MeterRegistry registry,
+                                          NPlusOneDetector detector) {
+        Counter rejected = registry.counter(REJECTED, "bulkhead", name);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(pool.getThreads());
+        executor.setMaxPoolSize(pool.getThreads());
+        executor.setQueueCapacity(pool.getQueueCapacity());
+        executor.setThreadNamePrefix("bulkhead-" + name + "-");
+        executor.setTaskDecorator(detector::propagate);
+        executor.setRejectedExecutionHandler((task, threadPool) -> {
+            rejected.increment();
+            throw new RejectedExecutionException("bulkhead " + name + " is full");
+        });
+        executor.initialize();
+
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "bulkhead." + name, Tags.empty())
+                .bindTo(registry);
+        return executor;
+    }
+
+    @Override
+    public void destroy() {
+        executors.values().forEach(ThreadPoolTaskExecutor::shutdown);
+    }
+}
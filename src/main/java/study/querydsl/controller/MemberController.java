@@ -1,38 +1,168 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.server.ResponseStatusException;
+import study.querydsl.dto.MemberCreateDto;
+import study.querydsl.dto.MemberCursor;
+import study.querydsl.dto.MemberKeysetPage;
 import study.querydsl.dto.MemberSearchCondition;
-import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberBulkRepository;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static study.querydsl.controller.MemberBulkheads.EXPORT;
+import static study.querydsl.controller.MemberBulkheads.V1;
+import static study.querydsl.controller.MemberBulkheads.V2;
+import static study.querydsl.controller.MemberBulkheads.V3;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
+    // spring.data.web.pageable.max-page-size 와 맞춘다.
+    private static final int MAX_KEYSET_SIZE = 2000;
+    private static final String NDJSON = "application/x-ndjson";
+
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberBulkRepository memberBulkRepository;
+    private final MemberExportProperties exportProperties;
+    private final MemberBulkProperties bulkProperties;
+    private final ObjectMapper objectMapper;
+    private final MemberResponseCache responseCache;
+    private final MemberBulkheads bulkheads;
 
+    /*
+     v1~v3 는 MemberResponseCache 로 ETag(If-None-Match -> 304)와 응답 본문 캐시를 적용한다.
+     */
     @GetMapping("/v1/members")
-    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition){
-        return memberJpaRepository.search(condition);
+    public ResponseEntity<byte[]> searchMemberV1(MemberSearchCondition condition, WebRequest request){
+        return responseCache.get(V1, condition, null, request,
+                () -> memberJpaRepository.search(condition));
+    }
+
+    /*
+     /async 는 같은 검색을 엔드포인트별 bulkhead 에서 비동기로 실행하고 Tomcat 워커는 바로 반환된다.
+     요청 스레드 밖(open-in-view 밖)에서 실행되므로 DTO 를 반환하는 검색만 사용한다.
+     */
+    @GetMapping("/v1/members/async")
+    public CompletableFuture<ResponseEntity<byte[]>> searchMemberV1Async(MemberSearchCondition condition, WebRequest request){
+        return responseCache.getAsync(V1, condition, null, request, bulkheads.get(V1),
+                () -> memberJpaRepository.search(condition));
+    }
+
+    /*
+     v1 과 같은 검색을 NDJSON(한 줄에 한 건)으로 스트리밍한다.
+     전체 결과를 메모리에 올리지 않으므로 대량 export 에 사용한다.
+     */
+    @GetMapping(value = "/v1/members/export", produces = NDJSON)
+    public WebAsyncTask<Void> exportMemberV1(MemberSearchCondition condition, HttpServletResponse response) {
+        return new WebAsyncTask<>(exportProperties.getTimeoutMillis(), bulkheads.get(EXPORT), () -> {
+            export(condition, response);
+            return null;
+        });
+    }
+
+    private void export(MemberSearchCondition condition, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        Writer writer = response.getWriter();
+        int flushInterval = exportProperties.getFlushInterval();
+        long[] written = {0};
+
+        memberJpaRepository.searchStream(condition, exportProperties.getFetchSize(), dto -> {
+            try {
+                writer.write(objectMapper.writeValueAsString(dto));
+                writer.write('\n');
+                if (++written[0] % flushInterval == 0) {
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
     }
 
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable){
-        return memberRepository.searchPageSimple(condition, pageable);
+    public ResponseEntity<byte[]> searchMemberV2(MemberSearchCondition condition, Pageable pageable, WebRequest request){
+        return responseCache.get(V2, condition, pageable, request,
+                () -> memberRepository.searchPageSimple(condition, pageable));
+    }
+
+    @GetMapping("/v2/members/async")
+    public CompletableFuture<ResponseEntity<byte[]>> searchMemberV2Async(MemberSearchCondition condition, Pageable pageable, WebRequest request){
+        return responseCache.getAsync(V2, condition, pageable, request, bulkheads.get(V2),
+                () -> memberRepository.searchPageSimple(condition, pageable));
     }
 
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable){
-        return memberRepository.searchPageComplex(condition, pageable);
+    public ResponseEntity<byte[]> searchMemberV3(MemberSearchCondition condition, Pageable pageable, WebRequest request){
+        return responseCache.get(V3, condition, pageable, request,
+                () -> memberRepository.searchPageComplex(condition, pageable));
+    }
+
+    @GetMapping("/v3/members/async")
+    public CompletableFuture<ResponseEntity<byte[]>> searchMemberV3Async(MemberSearchCondition condition, Pageable pageable, WebRequest request){
+        return responseCache.getAsync(V3, condition, pageable, request, bulkheads.get(V3),
+                () -> memberRepository.searchPageComplex(condition, pageable));
+    }
+
+    @GetMapping("/v4/members")
+    public MemberKeysetPage searchMemberV4(MemberSearchCondition condition,
+                                           @RequestParam(required = false) String after,
+                                           @RequestParam(defaultValue = "id") String orderBy,
+                                           @RequestParam(defaultValue = "10") int size){
+        int pageSize = Math.max(1, Math.min(size, MAX_KEYSET_SIZE));
+        return memberRepository.searchKeyset(condition, parseCursor(after), "age".equals(orderBy), pageSize);
     }
 
+    // 클라이언트가 보낸 잘못된 커서는 500 이 아니라 400 으로 응답한다.
+    private MemberCursor parseCursor(String after) {
+        try {
+            return MemberCursor.parse(after);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    // 한 트랜잭션으로 등록하므로 요청 크기를 제한한다.
+    @PostMapping("/v1/members/bulk")
+    public int saveMembers(@RequestBody List<MemberCreateDto> members){
+        if (members.size() > bulkProperties.getMaxRequestSize()) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "한 요청에 최대 " + bulkProperties.getMaxRequestSize() + "명까지 등록할 수 있습니다.");
+        }
+        return memberBulkRepository.saveAll(members);
+    }
+
+    // bulkhead 가 가득 찼으면 기다리게 하지 않고 바로 거절한다.
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Void> rejected(){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
 
 }
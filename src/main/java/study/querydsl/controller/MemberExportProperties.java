@@ -0,0 +1,28 @@
+package study.querydsl.controller;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+/**
+ * 회원 export(NDJSON 스트리밍) 설정
+ */
+@Getter @Setter
+@Validated
+@Component
+@ConfigurationProperties(prefix = "querydsl.export")
+public class MemberExportProperties {
+
+    // JDBC fetch size (한번에 DB 에서 가져오는 row 수)
+    @Min(1)
+    private int fetchSize = 500;
+    // 이 건수마다 응답을 flush 한다.
+    @Min(1)
+    private int flushInterval = 1000;
+    // 비동기 export 요청 타임아웃
+    private long timeoutMillis = 600_000;
+}
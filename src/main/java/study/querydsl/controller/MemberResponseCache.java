@@ -0,0 +1,129 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberDataVersion;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ 회원 검색 응답의 조건부 요청(ETag) 처리와 직렬화된 응답 본문 캐시
+ ETag 는 (MemberDataVersion, 엔드포인트, 정규화된 MemberSearchCondition, 페이지/정렬) 로 만든다.
+ - If-None-Match 가 같으면 DB 를 조회하지 않고 304 를 반환한다.
+ - 같은 키의 응답 본문은 maximumBytes 안에서 캐시해서 그대로 내려준다.
+ 데이터가 바뀌면(커밋된 엔티티 변경, 벌크 변경) 버전이 올라가므로 이전 ETag/캐시는 다시 사용되지 않는다.
+ 버전에는 기동마다 새로 만드는 epoch 가 들어가므로 재기동 전의 ETag 와도 맞지 않는다.
+ */
+@Component
+public class MemberResponseCache {
+
+    private final MemberDataVersion dataVersion;
+    private final ObjectMapper objectMapper;
+    private final MemberResponseCacheProperties properties;
+    private final Cache<String, byte[]> bodies;
+
+    public MemberResponseCache(MemberDataVersion dataVersion, ObjectMapper objectMapper,
+                               MemberResponseCacheProperties properties) {
+        this.dataVersion = dataVersion;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.bodies = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumBytes())
+                .weigher((String key, byte[] body) -> body.length)
+                .expireAfterWrite(properties.getTtlSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    public ResponseEntity<byte[]> get(String endpoint, MemberSearchCondition condition, Pageable pageable,
+                                      WebRequest request, Supplier<?> search) {
+        String key = keyOf(endpoint, condition, pageable);
+        String eTag = eTagOf(key);
+
+        ResponseEntity<byte[]> cached = cached(key, eTag, request);
+        return cached != null ? cached : ok(eTag, load(key, search));
+    }
+
+    /*
+     304 와 캐시된 본문은 요청 스레드에서 바로 반환하고, 검색이 필요할 때만 executor(엔드포인트 bulkhead)에서 실행한다.
+     executor 가 가득 차 있으면 TaskRejectedException 이 그대로 던져진다.
+     */
+    public CompletableFuture<ResponseEntity<byte[]>> getAsync(String endpoint, MemberSearchCondition condition,
+                                                              Pageable pageable, WebRequest request,
+                                                              Executor executor, Supplier<?> search) {
+        String key = keyOf(endpoint, condition, pageable);
+        String eTag = eTagOf(key);
+
+        ResponseEntity<byte[]> cached = cached(key, eTag, request);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return CompletableFuture.supplyAsync(() -> ok(eTag, load(key, search)), executor);
+    }
+
+    // If-None-Match 가 같으면 304, 캐시된 본문이 있으면 200, 둘 다 아니면 null
+    private ResponseEntity<byte[]> cached(String key, String eTag, WebRequest request) {
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        byte[] body = properties.isEnabled() ? bodies.getIfPresent(key) : null;
+        return body != null ? ok(eTag, body) : null;
+    }
+
+    private byte[] load(String key, Supplier<?> search) {
+        return properties.isEnabled()
+                ? bodies.get(key, k -> serialize(search.get()))
+                : serialize(search.get());
+    }
+
+    private String eTagOf(String key) {
+        return "\"" + DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private ResponseEntity<byte[]> ok(String eTag, byte[] body) {
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    private String keyOf(String endpoint, MemberSearchCondition condition, Pageable pageable) {
+        StringBuilder key = new StringBuilder()
+                .append(dataVersion.current()).append('|')
+                .append(endpoint).append('|')
+                .append(condition.normalize());
+        if (pageable != null && pageable.isPaged()) {
+            key.append('|').append(pageable.getPageNumber())
+                    .append('|').append(pageable.getPageSize())
+                    .append('|').append(pageable.getSort());
+        }
+        return key.toString();
+    }
+
+    private byte[] serialize(Object result) {
+        try {
+            return objectMapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package study.querydsl.controller;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 회원 검색 응답(직렬화된 JSON) 캐시 설정
+ */
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "querydsl.response-cache")
+public class MemberResponseCacheProperties {
+
+    // false 이면 ETag/304 만 사용하고 응답 본문은 캐시하지 않는다.
+    private boolean enabled = true;
+    // 캐시된 응답 본문 크기 합계 상한
+    private long maximumBytes = 32 * 1024 * 1024;
+    private long ttlSeconds = 60;
+}
@@ -0,0 +1,159 @@
+package study.querydsl.controller;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.repository.MemberCountCache;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchPlanCache;
+import study.querydsl.repository.support.QueryMetrics;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 배포 직후 첫 요청이 느리지 않도록 MemberRepositoryCustom 의 모든 검색 모양(조건 16가지 x UsernameMatch)과
+ * QMemberTeamDto/QMemberDto 프로젝션을 한번씩 실행해서
+ * Querydsl JPQL 직렬화와 Hibernate 쿼리 플랜 캐시를 미리 채운다.
+ * teamName 조건은 없는 팀이면 team.id in (:teamIds) 가 아닌 다른 쿼리가 되므로 실제 팀 이름(가장 먼저 등록된 팀)으로 실행하고,
+ * MemberSearchPlanCache 의 JPQL 은 실행 없이 컴파일한다.
+ * 끝나기 전까지 health 는 OUT_OF_SERVICE 이다.
+ * 워밍업이 실패해도 기동은 계속하고(실패는 로그로 남긴다) health 는 DOWN 으로 남긴다.
+ * querydsl.warmup.enabled=true 일 때만 동작하고(기본 꺼짐, 운영 배포에서 켠다),
+ * 워밍업 호출은 QueryMetrics/SingleFlightAspect 메트릭에 기록하지 않는다.
+ */
+@Slf4j
+@ConditionalOnProperty(prefix = "querydsl.warmup", name = "enabled", havingValue = "true")
+@Component("queryWarmup")
+public class QueryWarmup implements HealthIndicator {
+
+    private static final int SHAPES = 1 << 4;
+
+    private final MemberRepository memberRepository;
+    private final MemberJpaRepository memberJpaRepository;
+    private final MemberCountCache countCache;
+    private final JPAQueryFactory queryFactory;
+    private final MemberSearchPlanCache searchPlans;
+    private final EntityManager em;
+    private final QueryMetrics queryMetrics;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private volatile boolean completed;
+    private volatile long elapsedMillis;
+    private volatile Throwable failure;
+
+    public QueryWarmup(MemberRepository memberRepository, MemberJpaRepository memberJpaRepository,
+                       MemberCountCache countCache, JPAQueryFactory queryFactory,
+                       MemberSearchPlanCache searchPlans, EntityManager em, QueryMetrics queryMetrics,
+                       PlatformTransactionManager transactionManager) {
+        this.memberRepository = memberRepository;
+        this.memberJpaRepository = memberJpaRepository;
+        this.countCache = countCache;
+        this.queryFactory = queryFactory;
+        this.searchPlans = searchPlans;
+        this.em = em;
+        this.queryMetrics = queryMetrics;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmup() {
+        try {
+            run();
+        } catch (RuntimeException e) {
+            failure = e;
+            log.error("query warmup failed", e);
+        }
+    }
+
+    private void run() {
+        long start = System.currentTimeMillis();
+        PageRequest pageRequest = PageRequest.of(0, 1);
+
+        int shapes = queryMetrics.withoutMetrics(() -> readOnlyTransaction.execute(status -> {
+            searchPlans.compile(em);
+            String teamName = anyTeamName();
+            int count = 0;
+            for (int shape = 0; shape < SHAPES; shape++) {
+                for (UsernameMatch match : matchesOf(shape)) {
+                    MemberSearchCondition condition = conditionOf(shape, teamName);
+                    condition.setUsernameMatch(match);
+                    memberRepository.search(condition);
+                    memberRepository.searchPageSimple(condition, pageRequest);
+                    memberRepository.searchPageComplex(condition, pageRequest);
+                    memberRepository.searchKeyset(condition, null, false, 1);
+                    memberRepository.searchKeyset(condition, null, true, 1);
+                    memberJpaRepository.searchByBuilder(condition);
+                    count++;
+                }
+            }
+            queryFactory
+                    .select(new QMemberDto(member.username, member.age))
+                    .from(member)
+                    .limit(1)
+                    .fetch();
+            return count;
+        }));
+        // 워밍업용 조건으로 만들어진 count 는 버린다.
+        countCache.invalidateAll();
+
+        elapsedMillis = System.currentTimeMillis() - start;
+        completed = true;
+        log.info("query warmup completed: {} search shapes in {} ms", shapes, elapsedMillis);
+    }
+
+    @Override
+    public Health health() {
+        if (failure != null) {
+            return Health.down(failure).withDetail("warmup", "failed").build();
+        }
+        if (!completed) {
+            return Health.outOfService().withDetail("warmup", "in progress").build();
+        }
+        return Health.up().withDetail("elapsedMillis", elapsedMillis).build();
+    }
+
+    // 팀이 하나도 없으면 teamName 모양은 데울 쿼리가 없다.
+    private String anyTeamName() {
+        List<String> names = em.createQuery("select t.name from Team t order by t.id", String.class)
+                .setMaxResults(1)
+                .getResultList();
+        return names.isEmpty() || names.get(0) == null ? "warmup" : names.get(0);
+    }
+
+    private UsernameMatch[] matchesOf(int shape) {
+        return (shape & 1) != 0 ? UsernameMatch.values() : new UsernameMatch[]{UsernameMatch.EXACT};
+    }
+
+    private MemberSearchCondition conditionOf(int shape, String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        if ((shape & 1) != 0) {
+            condition.setUsername("warmup");
+        }
+        if ((shape & 1 << 1) != 0) {
+            condition.setTeamName(teamName);
+        }
+        if ((shape & 1 << 2) != 0) {
+            condition.setAgeGoe(0);
+        }
+        if ((shape & 1 << 3) != 0) {
+            condition.setAgeLoe(0);
+        }
+        return condition;
+    }
+}
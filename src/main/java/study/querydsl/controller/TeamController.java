@@ -0,0 +1,30 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.repository.TeamMemberStats;
+
+import java.util.List;
+
+/*
+ 팀 대시보드용 통계 (TeamMemberStats 에서 SQL 없이 바로 반환한다)
+ */
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private final TeamMemberStats teamMemberStats;
+
+    @GetMapping("/v1/teams/stats")
+    public List<TeamStatsDto> teamStats(){
+        return teamMemberStats.getAll();
+    }
+
+    @GetMapping("/v1/teams/{teamId}/stats")
+    public TeamStatsDto teamStats(@PathVariable Long teamId){
+        return teamMemberStats.get(teamId);
+    }
+}
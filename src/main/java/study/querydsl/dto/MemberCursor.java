@@ -0,0 +1,48 @@
+package study.querydsl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.util.StringUtils;
+
+/*
+ keyset(seek) 페이징 커서
+ - id 정렬 : "{memberId}"
+ - age 정렬 : "{age}_{memberId}"
+ */
+@Data
+@AllArgsConstructor
+public class MemberCursor {
+
+    private static final String SEPARATOR = "_";
+
+    private Integer age;
+    private Long memberId;
+
+    public boolean isAgeOrdered() {
+        return age != null;
+    }
+
+    public static MemberCursor from(MemberTeamDto last, boolean ageOrdered) {
+        return new MemberCursor(ageOrdered ? last.getAge() : null, last.getMemberId());
+    }
+
+    public static MemberCursor parse(String after) {
+        if (!StringUtils.hasText(after)) {
+            return null;
+        }
+        try {
+            int idx = after.indexOf(SEPARATOR);
+            if (idx < 0) {
+                return new MemberCursor(null, Long.valueOf(after));
+            }
+            return new MemberCursor(Integer.valueOf(after.substring(0, idx)),
+                    Long.valueOf(after.substring(idx + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("잘못된 커서 값 입니다. after=" + after, e);
+        }
+    }
+
+    public String encode() {
+        return isAgeOrdered() ? age + SEPARATOR + memberId : String.valueOf(memberId);
+    }
+}
@@ -0,0 +1,28 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class MemberKeysetPage implements RowCounted {
+
+    private List<MemberTeamDto> content;
+    private int size;
+    private boolean hasNext;
+    private String next;
+
+    public MemberKeysetPage(List<MemberTeamDto> content, int size, boolean hasNext, String next) {
+        this.content = content;
+        this.size = size;
+        this.hasNext = hasNext;
+        this.next = next;
+    }
+
+    @JsonIgnore
+    @Override
+    public int getRowCount() {
+        return content.size();
+    }
+}
@@ -2,6 +2,8 @@ package study.querydsl.dto;
 
 import lombok.Data;
 
+import static org.springframework.util.StringUtils.hasText;
+
 @Data
 public class MemberSearchCondition {
     //회원명, 팀명, 나이(ageCoe, ageLoe)
@@ -10,4 +12,23 @@ public class MemberSearchCondition {
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
+    private UsernameMatch usernameMatch; // null 이면 EXACT
+
+    /*
+     캐시 키 용도로 정규화한 복사본
+     hasText 로 거르는 조건과 동일하게 빈 문자열은 null 로 취급한다.
+     */
+    public MemberSearchCondition normalize() {
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(hasText(username) ? username : null);
+        normalized.setTeamName(hasText(teamName) ? teamName : null);
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        normalized.setUsernameMatch(normalized.getUsername() != null ? getUsernameMatchOrDefault() : null);
+        return normalized;
+    }
+
+    public UsernameMatch getUsernameMatchOrDefault() {
+        return usernameMatch != null ? usernameMatch : UsernameMatch.EXACT;
+    }
 }
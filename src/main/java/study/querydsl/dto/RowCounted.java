@@ -0,0 +1,9 @@
+package study.querydsl.dto;
+
+/**
+ * List/Page 가 아닌 결과 타입에서 반환 row 수를 알려줄 때 사용한다. (QueryMetrics 의 rows 메트릭)
+ */
+public interface RowCounted {
+
+    int getRowCount();
+}
@@ -0,0 +1,26 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+/*
+ 팀별 회원 나이 통계 (count, sum, avg, max, min)
+ 회원이 없으면 avg/max/min 은 null 이다.
+ */
+@Data
+public class TeamStatsDto {
+    private Long teamId;
+    private long count;
+    private long ageSum;
+    private Double ageAvg;
+    private Integer ageMax;
+    private Integer ageMin;
+
+    public TeamStatsDto(Long teamId, long count, long ageSum, Integer ageMax, Integer ageMin) {
+        this.teamId = teamId;
+        this.count = count;
+        this.ageSum = ageSum;
+        this.ageAvg = count > 0 ? (double) ageSum / count : null;
+        this.ageMax = ageMax;
+        this.ageMin = ageMin;
+    }
+}
@@ -0,0 +1,29 @@
+package study.querydsl.dto;
+
+/*
+ username 검색 방식
+ PREFIX 는 like 'abc%' 대신 범위 조건(username >= 'abc' and username < 'abd')으로,
+ IGNORE_CASE 는 lower(username) 함수 기반 인덱스를 타도록 만들어진다. (db/member-index.sql)
+ */
+public enum UsernameMatch {
+    EXACT(false, false),
+    PREFIX(true, false),
+    IGNORE_CASE(false, true),
+    PREFIX_IGNORE_CASE(true, true);
+
+    private final boolean prefix;
+    private final boolean ignoreCase;
+
+    UsernameMatch(boolean prefix, boolean ignoreCase) {
+        this.prefix = prefix;
+        this.ignoreCase = ignoreCase;
+    }
+
+    public boolean isPrefix() {
+        return prefix;
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+}
@@ -0,0 +1,96 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberCreateDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+ 대량 회원 등록
+ hibernate.jdbc.batch_size 단위로 flush/clear 해서 insert 를 JDBC batch 로 묶고,
+ 영속성 컨텍스트가 계속 커지지 않게 한다.
+ (id 는 pooled 시퀀스로 할당 받으므로 row 마다 시퀀스 조회가 나가지 않는다.)
+ */
+@Repository
+public class MemberBulkRepository {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final MemberDataVersion dataVersion;
+    private final int batchSize;
+
+    public MemberBulkRepository(EntityManager em, JPAQueryFactory queryFactory, MemberDataVersion dataVersion,
+                                @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int batchSize) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.dataVersion = dataVersion;
+        // batch_size 가 0(JDBC batch 끔)이어도 0 으로 나누지 않도록 최소 1 로 맞춘다.
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Transactional
+    public int saveAll(List<MemberCreateDto> members) {
+        Map<String, Long> teamIds = resolveTeamIds(members);
+
+        int count = 0;
+        for (MemberCreateDto dto : members) {
+            Team memberTeam = hasText(dto.getTeamName())
+                    ? em.getReference(Team.class, teamIds.get(dto.getTeamName()))
+                    : null;
+            em.persist(new Member(dto.getUsername(), dto.getAge(), memberTeam));
+
+            if (++count % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+
+        dataVersion.changed();
+        return count;
+    }
+
+    // 요청에 포함된 팀 이름을 한번에 조회하고, 없는 팀은 새로 만든다.
+    private Map<String, Long> resolveTeamIds(List<MemberCreateDto> members) {
+        Set<String> teamNames = members.stream()
+                .map(MemberCreateDto::getTeamName)
+                .filter(name -> hasText(name))
+                .collect(Collectors.toSet());
+
+        Map<String, Long> teamIds = new HashMap<>();
+        if (teamNames.isEmpty()) {
+            return teamIds;
+        }
+
+        List<Team> teams = queryFactory
+                .selectFrom(team)
+                .where(team.name.in(teamNames))
+                .fetch();
+        for (Team findTeam : teams) {
+            teamIds.putIfAbsent(findTeam.getName(), findTeam.getId());
+        }
+
+        for (String teamName : teamNames) {
+            if (!teamIds.containsKey(teamName)) {
+                Team newTeam = new Team(teamName);
+                em.persist(newTeam);
+                teamIds.put(teamName, newTeam.getId());
+            }
+        }
+        return teamIds;
+    }
+}
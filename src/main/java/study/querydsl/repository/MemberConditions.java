@@ -0,0 +1,85 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.StringExpression;
+import com.querydsl.jpa.JPQLQuery;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.repository.support.ConditionEngine;
+
+import java.util.Locale;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+ MemberSearchCondition -> Predicate 규칙 (모든 회원 리포지토리가 같이 사용한다)
+ teamName 은 TeamNameResolver 로 member.team.id 조건이 되므로 team 조인이 필요 없다.
+ team 은 select 절에서 team 을 쓸 때(TEAM) 만 조인된다.
+ username 은 UsernameMatch 에 따라 인덱스를 탈 수 있는 모양(=, 범위, lower() 함수 인덱스)으로만 만든다.
+ */
+@Component
+public class MemberConditions {
+
+    public static final String TEAM = "team";
+
+    private final ConditionEngine<MemberSearchCondition> engine;
+
+    public MemberConditions(TeamNameResolver teamNameResolver) {
+        this.engine = ConditionEngine.<MemberSearchCondition>builder()
+                .join(TEAM, member.team, team)
+                .rule(condition -> condition, condition -> hasText(condition.getUsername()),
+                        MemberConditions::usernameMatches)
+                .rule(MemberSearchCondition::getTeamName, teamName -> hasText(teamName),
+                        teamNameResolver::teamNameEq)
+                .rule(MemberSearchCondition::getAgeGoe, ageGoe -> ageGoe != null,
+                        ageGoe -> member.age.goe(ageGoe))
+                .rule(MemberSearchCondition::getAgeLoe, ageLoe -> ageLoe != null,
+                        ageLoe -> member.age.loe(ageLoe))
+                .build();
+    }
+
+    public <Q extends JPQLQuery<?>> Q apply(Q query, MemberSearchCondition condition, String... projected) {
+        return engine.apply(query, condition, projected);
+    }
+
+    public Predicate toPredicate(MemberSearchCondition condition) {
+        return engine.toPredicate(condition);
+    }
+
+    /*
+     PREFIX: username >= 'abc' and username < 'abd' (B-tree 인덱스 range scan)
+     IGNORE_CASE: lower(username) 에 같은 조건 (함수 기반 인덱스 member_username_lower_idx)
+     */
+    static BooleanExpression usernameMatches(MemberSearchCondition condition) {
+        UsernameMatch match = condition.getUsernameMatchOrDefault();
+        StringExpression username = match.isIgnoreCase() ? member.username.lower() : member.username;
+        String value = usernameValue(condition.getUsername(), match);
+
+        if (!match.isPrefix()) {
+            return username.eq(value);
+        }
+        return username.goe(value).and(username.lt(prefixUpperBound(value)));
+    }
+
+    static String usernameValue(String username, UsernameMatch match) {
+        return match.isIgnoreCase() ? username.toLowerCase(Locale.ROOT) : username;
+    }
+
+    /*
+     prefix 로 시작하는 모든 문자열보다 큰 가장 작은 문자열 ("abc" -> "abd")
+     */
+    static String prefixUpperBound(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            throw new IllegalArgumentException("prefix 검색을 할 수 없는 username 입니다. username=" + prefix);
+        }
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+}
@@ -0,0 +1,36 @@
+package study.querydsl.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.support.CountCacheProperties;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/*
+ 같은 검색 조건으로 페이지를 넘길 때마다 count 쿼리가 다시 나가지 않도록
+ 정규화된 MemberSearchCondition 별로 total count 를 캐시한다.
+ Member/Team 이 바뀌면 MemberDataVersion 이 버전을 올리면서 invalidateAll() 한다.
+ */
+@Component
+public class MemberCountCache {
+
+    private final Cache<MemberSearchCondition, Long> cache;
+
+    public MemberCountCache(CountCacheProperties properties) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getTtlSeconds(), TimeUnit.SECONDS)
+                .maximumSize(properties.getMaximumSize())
+                .build();
+    }
+
+    public long getCount(MemberSearchCondition condition, LongSupplier countQuery) {
+        return cache.get(condition.normalize(), key -> countQuery.getAsLong());
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
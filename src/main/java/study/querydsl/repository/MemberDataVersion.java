@@ -0,0 +1,144 @@
+package study.querydsl.repository;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ Member/Team 데이터 버전 (epoch + 변경될 때마다 증가하는 카운터)
+ - epoch 는 기동할 때마다 새로 만든다. 재기동 전에 받은 ETag 가 카운터가 다시 같은 값이 되었을 때 맞지 않도록 한다.
+   (인스턴스마다 ETag 가 다르므로 인스턴스를 옮기면 한번 다시 내려받는다)
+ - Member/Team 의 insert/update/delete 가 커밋되면 Hibernate post-commit 리스너로 올린다.
+   (Spring Data save/delete, dirty checking, 팀 이름 변경 포함)
+   엔티티마다 이벤트가 오므로 Spring 트랜잭션 안이면 afterCommit 에서 트랜잭션당 한번만 올린다. (대량 등록 10만 건 -> 한번)
+ - 엔티티 이벤트가 나가지 않는 변경(대량 등록, 벌크 update/delete)은 changed() 를 호출한다.
+   트랜잭션 안이면 커밋 전 값을 읽은 요청이 새 버전으로 캐시하지 않도록 트랜잭션이 끝난 뒤 한번 더 올린다.
+ total count 캐시도 같은 시점에 비운다.
+ */
+@Component
+public class MemberDataVersion implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+
+    private final String epoch = UUID.randomUUID().toString();
+    private final AtomicLong version = new AtomicLong();
+    private final MemberCountCache countCache;
+
+    @Autowired
+    public MemberDataVersion(MemberCountCache countCache, EntityManagerFactory emf) {
+        this(countCache);
+        EventListenerRegistry listeners = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        listeners.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        listeners.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    // 엔티티 이벤트 없이 사용할 때 (단위 테스트)
+    public MemberDataVersion(MemberCountCache countCache) {
+        this.countCache = countCache;
+    }
+
+    public String current() {
+        return epoch + "." + version.get();
+    }
+
+    public void changed() {
+        bump();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    bump();
+                }
+            });
+        }
+    }
+
+    private void bump() {
+        version.incrementAndGet();
+        countCache.invalidateAll();
+    }
+
+    /*
+     post-commit 리스너는 Hibernate 커밋 중(Spring afterCommit 전)에 실행되므로 여기서 등록한 동기화도 afterCommit 이 호출된다.
+     이미 등록했으면(트랜잭션 리소스로 표시) 다시 등록하지 않는다.
+     */
+    private void bumpAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                bump();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(MemberDataVersion.this);
+            }
+        });
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (requiresPostCommitHanding(event.getPersister())) {
+            bumpAfterCommit();
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (requiresPostCommitHanding(event.getPersister())) {
+            bumpAfterCommit();
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (requiresPostCommitHanding(event.getPersister())) {
+            bumpAfterCommit();
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    // 다른 리스너 때문에 다른 엔티티 이벤트도 들어오므로 Member/Team 만 반영한다.
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return persister.getMappedClass() == Member.class || persister.getMappedClass() == Team.class;
+    }
+}
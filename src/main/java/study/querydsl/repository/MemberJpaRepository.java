@@ -1,10 +1,12 @@
 package study.querydsl.repository;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
-import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.controller.staticTest;
 import study.querydsl.dto.MemberSearchCondition;
@@ -18,25 +20,35 @@ import study.querydsl.entity.QTeam;
 import javax.persistence.EntityManager;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.springframework.util.StringUtils.*;
 import static study.querydsl.controller.staticTest.song;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberConditions.TEAM;
 
 @Repository
 public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberDataVersion dataVersion;
+    private final MemberSearchPlanCache searchPlans;
+    private final MemberConditions conditions;
 
-    public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory) {
+    public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory, MemberDataVersion dataVersion,
+                               MemberSearchPlanCache searchPlans, MemberConditions conditions) {
         this.em = em;
         this.queryFactory = queryFactory;
+        this.dataVersion = dataVersion;
+        this.searchPlans = searchPlans;
+        this.conditions = conditions;
     }
 
     public void save(Member member){
         em.persist(member);
+        dataVersion.changed();
     }
 
     public Optional<Member> findById(Long id){
@@ -44,11 +56,13 @@ public class MemberJpaRepository {
         return Optional.ofNullable(findMember);
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll(){
         return em.createQuery("select m from Member m", Member.class)
                 .getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll_Querydsl(){
         return queryFactory
                 .selectFrom(member)
@@ -70,21 +84,11 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition){
 
         BooleanBuilder builder = new BooleanBuilder();
-        if (hasText(condition.getUsername())) {
-            builder.and(member.username.eq(condition.getUsername()));
-        }
-        if (hasText(condition.getTeamName())) {
-            builder.and(team.name.eq(condition.getTeamName()));
-        }
-        if(condition.getAgeGoe()!=null){
-            builder.and(member.age.goe(condition.getAgeGoe()));
-        }
-        if(condition.getAgeLoe()!=null){
-            builder.and(member.age.loe(condition.getAgeLoe()));
-        }
+        builder.and(conditions.toPredicate(condition));
 
         return queryFactory
                 .select(new QMemberTeamDto(
@@ -101,9 +105,23 @@ public class MemberJpaRepository {
     }
 
 
+    /*
+     /v1/members 는 응답이 크므로 DTO 를 JPQL 대신 미리 만든 SQL 로 직접 읽는다.
+     (조건 모양별 SQL 에 값만 바인딩하고 ResultSet 컬럼을 바로 MemberTeamDto 생성자에 넘긴다.)
+     */
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition){
+        return searchPlans.searchRows(em, condition);
+    }
 
-        return queryFactory
+    /*
+     결과를 List 로 모으지 않고 forward-only 스크롤로 한 건씩 consumer 에 넘긴다.
+     DTO projection 이라 영속성 컨텍스트에 엔티티가 쌓이지 않으므로 결과 크기와 상관없이 힙 사용량이 일정하다.
+     */
+    @Transactional(readOnly = true)
+    public void searchStream(MemberSearchCondition condition, int fetchSize, Consumer<MemberTeamDto> consumer){
+
+        CloseableIterator<MemberTeamDto> iterator = conditions.apply(queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -111,35 +129,17 @@ public class MemberJpaRepository {
                         team.id.as("teamId"),
                         team.name.as("teamName")
                 ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
-    }
-
-    private BooleanExpression ageBetween(int a, int b){
-        return ageGoe(a).and(ageLoe(b));
-    }
-
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
-    }
-
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
-    }
-
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+                .from(member), condition, TEAM)
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .iterate();
+
+        try {
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
     }
 
 }
@@ -1,18 +1,24 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.stereotype.Repository;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.UserDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.WindowAggregates;
+import study.querydsl.repository.support.WindowAggregates.Aggregate;
+import study.querydsl.repository.support.WindowAggregates.Comparison;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
-import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberConditions.TEAM;
 
 /*
  분리해서 기능을 사용해도 괜찮다.
@@ -20,15 +26,31 @@ import static study.querydsl.entity.QTeam.team;
 @Repository
 public class MemberQueryRepository {
 
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchPlanCache searchPlans;
+    private final MemberConditions conditions;
+    private final WindowAggregates windowAggregates;
 
-    public MemberQueryRepository(EntityManager em){
+    // Oracle IN 목록 최대 1000
+    private static final int ID_CHUNK_SIZE = 1000;
+
+    public MemberQueryRepository(EntityManager em, MemberSearchPlanCache searchPlans, MemberConditions conditions,
+                                 WindowAggregates windowAggregates){
+        this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.searchPlans = searchPlans;
+        this.conditions = conditions;
+        this.windowAggregates = windowAggregates;
     }
 
     public List<MemberTeamDto> search(MemberSearchCondition condition){
+        return searchPlans.search(em, condition);
+    }
 
-        return queryFactory
+    public List<MemberTeamDto> searchByQuerydsl(MemberSearchCondition condition){
+
+        return conditions.apply(queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -36,35 +58,45 @@ public class MemberQueryRepository {
                         team.id.as("teamId"),
                         team.name.as("teamName")
                 ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
+                .from(member), condition, TEAM)
                 .fetch();
     }
 
-    private BooleanExpression ageBetween(int a, int b){
-        return ageGoe(a).and(ageLoe(b));
-    }
-
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+    /*
+     회원 이름과 aggregate(나이) 를 같이 조회한다. (select 절 상관 서브쿼리 대신 over() 한번)
+     perTeam 이면 팀별 집계, 아니면 전체 집계
+     UserDto.age 가 int 이므로 정수가 나오는 집계만 받는다. (AVG 는 소수점이 잘리므로 받지 않는다)
+     */
+    public List<UserDto> findUsernameWithAge(Aggregate aggregate, boolean perTeam){
+        if (aggregate == Aggregate.AVG) {
+            throw new IllegalArgumentException("AVG 는 정수 나이로 표현할 수 없습니다.");
+        }
+        return windowAggregates.withAggregate(aggregate, member.age, perTeam ? member.team : null, member.username)
+                .stream()
+                .map(row -> new UserDto((String) row[0], ((Number) row[1]).intValue()))
+                .collect(Collectors.toList());
     }
 
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
-    }
+    /*
+     나이가 aggregate(나이) 와 comparison 관계인 회원 (where 절 상관 서브쿼리 대신)
+     id 만 분석 함수로 고른 뒤 엔티티는 id 로 읽는다.
+     */
+    public List<Member> findByAgeComparedWith(Comparison comparison, Aggregate aggregate, boolean perTeam){
+        List<Long> ids = windowAggregates
+                .compareWithAggregate(comparison, aggregate, member.age, perTeam ? member.team : null, member.id)
+                .stream()
+                .map(row -> ((Number) row[0]).longValue())
+                .collect(Collectors.toList());
 
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+        List<Member> result = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            result.addAll(queryFactory
+                    .selectFrom(member)
+                    .where(member.id.in(ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()))))
+                    .orderBy(member.id.asc())
+                    .fetch());
+        }
+        return result;
     }
 
 }
@@ -2,6 +2,8 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.MemberCursor;
+import study.querydsl.dto.MemberKeysetPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 
@@ -11,5 +13,11 @@ public interface MemberRepositoryCustom {
     List<MemberTeamDto> search(MemberSearchCondition condition);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    MemberKeysetPage searchKeyset(MemberSearchCondition condition, MemberCursor cursor, boolean ageOrdered, int size);
+
+    // 벌크 변경 : 영속성 컨텍스트에서 변경된 회원만 분리하고, 변경된 row 수를 반환한다.
+    long bulkUpdateUsername(MemberSearchCondition condition, String username);
+    long bulkAddAge(MemberSearchCondition condition, int amount);
+    long bulkDelete(MemberSearchCondition condition);
 }
 
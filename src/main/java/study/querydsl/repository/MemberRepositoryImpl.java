@@ -1,29 +1,54 @@
 package study.querydsl.repository;
 
 import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
 import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.support.QuerydslRepositorySupport;
-import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberCursor;
+import study.querydsl.dto.MemberKeysetPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.DeferredJoin;
+import study.querydsl.repository.support.QueryMetrics;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.Function;
 
-import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberConditions.TEAM;
 
 public class MemberRepositoryImpl extends QuerydslRepositorySupport implements MemberRepositoryCustom{
 
+    private static final Map<String, ComparableExpressionBase<?>> SORT_KEYS = new HashMap<>();
+
+    static {
+        SORT_KEYS.put("id", member.id);
+        SORT_KEYS.put("memberId", member.id);
+        SORT_KEYS.put("username", member.username);
+        SORT_KEYS.put("age", member.age);
+    }
+
 /*
     private final JPAQueryFactory queryFactory;
 
@@ -33,57 +58,41 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
 */
 
     private final JPAQueryFactory queryFactory;
-
-    public MemberRepositoryImpl(EntityManager em){
+    private final MemberCountCache countCache;
+    private final MemberDataVersion dataVersion;
+    private final TeamMemberStats teamStats;
+    private final QueryMetrics queryMetrics;
+    private final MemberSearchPlanCache searchPlans;
+    private final MemberConditions conditions;
+    private final int bulkChunkSize;
+
+    public MemberRepositoryImpl(EntityManager em, MemberCountCache countCache, MemberDataVersion dataVersion,
+                                TeamMemberStats teamStats, QueryMetrics queryMetrics,
+                                MemberSearchPlanCache searchPlans, MemberConditions conditions,
+                                @Value("${querydsl.bulk.chunk-size:1000}") int bulkChunkSize){
         super(Member.class);
         queryFactory = new JPAQueryFactory(em);
+        this.countCache = countCache;
+        this.dataVersion = dataVersion;
+        this.teamStats = teamStats;
+        this.queryMetrics = queryMetrics;
+        this.searchPlans = searchPlans;
+        this.conditions = conditions;
+        this.bulkChunkSize = bulkChunkSize;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition){
-
-        List<MemberTeamDto> result = from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                )).fetch();
-
-        return result;
-
-        /*return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .fetch();*/
+        return searchPlans.search(getEntityManager(), condition);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
 
 
-        QueryResults<MemberTeamDto> results = queryFactory
+        JPAQuery<MemberTeamDto> query = conditions.apply(queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -91,35 +100,23 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                         team.id.as("teamId"),
                         team.name.as("teamName")
                 ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
+                .from(member), condition, TEAM);
+
+        List<MemberTeamDto> content = query
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
-                .fetchResults();
-
-        List<MemberTeamDto> content = results.getResults();
-        long total = results.getTotal();
+                .fetch();
 
-        return new PageImpl<>(content, pageable, total);
+        // count 가 필요할 때만 실행하고, 같은 조건의 다음 페이지부터는 캐시된 count 를 사용한다.
+        return queryMetrics.getPage(content, pageable,
+                () -> getTotal(condition, getCount(condition)));
     }
 
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageSimple2(MemberSearchCondition condition, Pageable pageable) {
 
 
-        JPQLQuery<MemberTeamDto> jpaQuery = from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
+        JPQLQuery<MemberTeamDto> jpaQuery = conditions.apply(from(member), condition, TEAM)
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -139,20 +136,27 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
         List<MemberTeamDto> content = getFetch(condition, pageable);
 
-
-        long total = getTotal(condition, pageable);
-        JPAQuery<Member> count = getCount(condition, pageable);
+        JPAQuery<Long> count = getCount(condition);
 
         // count 구할 필요가 없을 때는 실제로 돌리지 않는다.
-        return PageableExecutionUtils.getPage(content, pageable, count::fetchCount);
-        //return new PageImpl<>(content, pageable, total);
+        return queryMetrics.getPage(content, pageable,
+                () -> getTotal(condition, count));
     }
 
-    private List<MemberTeamDto> getFetch(MemberSearchCondition condition, Pageable pageable) {
-        return queryFactory
+    /*
+     offset 대신 마지막 row 의 (age, id) 또는 id 이후부터 읽는다.
+     페이지가 깊어져도 앞 페이지를 스캔/정렬하지 않는다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public MemberKeysetPage searchKeyset(MemberSearchCondition condition, MemberCursor cursor, boolean ageOrdered, int size) {
+        boolean byAge = cursor != null ? cursor.isAgeOrdered() : ageOrdered;
+
+        List<MemberTeamDto> rows = conditions.apply(queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -160,68 +164,179 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                         team.id.as("teamId"),
                         team.name.as("teamName")
                 ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
+                .from(member), condition, TEAM)
+                .where(afterCursor(cursor))
+                .orderBy(keysetOrder(byAge))
+                .limit(size + 1)
                 .fetch();
+
+        // 한 건 더 읽어서 다음 페이지 존재 여부를 판단한다.
+        boolean hasNext = rows.size() > size;
+        List<MemberTeamDto> content = hasNext ? rows.subList(0, size) : rows;
+        String next = hasNext ? MemberCursor.from(content.get(content.size() - 1), byAge).encode() : null;
+
+        return new MemberKeysetPage(content, size, hasNext, next);
     }
 
-    private long getTotal(MemberSearchCondition condition, Pageable pageable) {
-        return queryFactory
-                .select(member)
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetchCount();
+    private OrderSpecifier<?>[] keysetOrder(boolean byAge) {
+        return byAge
+                ? new OrderSpecifier<?>[]{member.age.asc(), member.id.asc()}
+                : new OrderSpecifier<?>[]{member.id.asc()};
     }
 
-    private JPAQuery<Member> getCount(MemberSearchCondition condition, Pageable pageable) {
-        return queryFactory
-                .select(member)
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize());
+    private BooleanExpression afterCursor(MemberCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        if (!cursor.isAgeOrdered()) {
+            return member.id.gt(cursor.getMemberId());
+        }
+        return member.age.gt(cursor.getAge())
+                .or(member.age.eq(cursor.getAge()).and(member.id.gt(cursor.getMemberId())));
+    }
+
+    @Override
+    @Transactional
+    public long bulkUpdateUsername(MemberSearchCondition condition, String username) {
+        return bulkExecute(condition, ids -> queryFactory
+                .update(member)
+                .set(member.username, username)
+                .where(member.id.in(ids))
+                .execute());
+    }
+
+    @Override
+    @Transactional
+    public long bulkAddAge(MemberSearchCondition condition, int amount) {
+        return bulkExecute(condition, ids -> queryFactory
+                .update(member)
+                .set(member.age, member.age.add(amount))
+                .where(member.id.in(ids))
+                .execute());
+    }
+
+    @Override
+    @Transactional
+    public long bulkDelete(MemberSearchCondition condition) {
+        return bulkExecute(condition, ids -> queryFactory
+                .delete(member)
+                .where(member.id.in(ids))
+                .execute());
     }
 
-    private BooleanExpression ageBetween(int a, int b){
-        return ageGoe(a).and(ageLoe(b));
+    /*
+     벌크 쿼리는 영속성 컨텍스트를 거치지 않는다.
+     - 대상 id 를 bulkChunkSize 만큼씩 id 순으로 읽어서 chunk 단위로 실행한다. (undo/lock 이 한번에 커지지 않게, Oracle IN 1000 제한)
+     - 실행 전에 flush 해서 쓰기 지연된 변경을 먼저 반영한다.
+     - 실행 후에는 em.clear() 대신 해당 id 의 엔티티만 영속성 컨텍스트/2차 캐시에서 제거한다.
+     */
+    private long bulkExecute(MemberSearchCondition condition, Function<List<Long>, Long> mutation) {
+        EntityManager em = getEntityManager();
+        em.flush();
+
+        long affected = 0;
+        Long lastId = null;
+        while (true) {
+            List<Long> ids = conditions.apply(queryFactory
+                    .select(member.id)
+                    .from(member), condition)
+                    .where(lastId != null ? member.id.gt(lastId) : null)
+                    .orderBy(member.id.asc())
+                    .limit(bulkChunkSize)
+                    .fetch();
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            affected += mutation.apply(ids);
+            evict(em, ids);
+            lastId = ids.get(ids.size() - 1);
+        }
+
+        dataVersion.changed();
+        teamStats.invalidate();
+        return affected;
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    private void evict(EntityManager em, List<Long> ids) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+        Cache secondLevelCache = em.getEntityManagerFactory().getCache();
+
+        for (Long id : ids) {
+            Object managed = session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister));
+            if (managed != null) {
+                em.detach(managed);
+            }
+            secondLevelCache.evict(Member.class, id);
+        }
+    }
+
+    /*
+     deferred join(ID 먼저) 으로 페이지를 읽는다.
+     - 정렬(pageable 정렬 + member.id)/offset/limit 은 member.id 만 대상으로 한다. (team 조인 없이 인덱스만 읽는다)
+     - 고른 id 의 row 만 team 과 조인해서 projection 하고, 순서는 첫 번째 쿼리를 따른다.
+     */
+    private List<MemberTeamDto> getFetch(MemberSearchCondition condition, Pageable pageable) {
+        JPQLQuery<Long> idQuery = conditions.apply(queryFactory
+                .select(member.id)
+                .from(member), condition);
+        List<Long> ids = idQuery
+                .orderBy(sortOrder(pageable.getSort()))
+                .orderBy(member.id.asc())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        return DeferredJoin.fetch(ids, chunk -> queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.id.in(chunk))
+                .fetch(), MemberTeamDto::getMemberId);
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+    /*
+     pageable 정렬을 QMember.member(member1) 기준으로 만든다.
+     getQuerydsl() 의 PathBuilder 별칭은 member 라서 from Member member1 쿼리에 쓰면 잘못된 JPQL 이 된다.
+     member 컬럼만 정렬할 수 있고(SORT_KEYS), 그 외 키(teamName 등)는 기존처럼 무시한다.
+     */
+    private OrderSpecifier<?>[] sortOrder(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            ComparableExpressionBase<?> path = SORT_KEYS.get(order.getProperty());
+            if (path != null) {
+                orders.add(order.isAscending() ? path.asc() : path.desc());
+            }
+        }
+        return orders.toArray(new OrderSpecifier<?>[0]);
     }
 
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    /*
+     teamName 만 있는 조건은 TeamMemberStats 에서 SQL 없이 구하고, 나머지는 count 캐시 -> count 쿼리 순서로 구한다.
+     */
+    private long getTotal(MemberSearchCondition condition, JPAQuery<Long> count) {
+        OptionalLong teamOnly = teamStats.countTeamOnly(condition);
+        return teamOnly.isPresent() ? teamOnly.getAsLong() : countCache.getCount(condition, count::fetchOne);
     }
 
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    /*
+     count 전용 쿼리
+     - 엔티티 대신 member.id 를 count 한다.
+     - team 조인을 하지 않는다. (projection 에 team 이 없으므로 MemberConditions 가 조인하지 않는다)
+     - offset/limit 은 적용하지 않는다.
+     실행은 호출하는 쪽에서 필요할 때(fetchOne) 한다.
+     */
+    private JPAQuery<Long> getCount(MemberSearchCondition condition) {
+        return conditions.apply(queryFactory
+                .select(member.id.count())
+                .from(member), condition);
     }
 
 }
@@ -0,0 +1,275 @@
+package study.querydsl.repository;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/*
+ MemberSearchCondition 의 모양(어떤 조건이 들어왔는지 + UsernameMatch) 별로 JPQL 을 미리 만들어 둔다.
+ 검색할 때는 BooleanExpression 트리 생성/JPQL 직렬화 없이 값만 바인딩하고,
+ JPQL 문자열이 항상 같으므로 Hibernate 쿼리 플랜 캐시도 그대로 재사용된다.
+ teamName 은 TeamNameResolver 로 id 를 찾아 m.team.id 조건으로 바인딩한다.
+
+ searchRows 는 같은 모양의 SQL 을 PreparedStatement 로 직접 실행하고 ResultSet 컬럼을 바로 생성자에 넘긴다.
+ (Hibernate 결과 변환/생성자 리플렉션 없음, member 컬럼은 db/member-index.sql 의 커버링 인덱스로만 읽힌다.)
+ 테이블/컬럼 이름은 Hibernate 매핑 정보에서 가져온다.
+ */
+@Component
+public class MemberSearchPlanCache {
+
+    private static final int USERNAME = 1;
+    private static final int TEAM_NAME = 1 << 1;
+    private static final int AGE_GOE = 1 << 2;
+    private static final int AGE_LOE = 1 << 3;
+    private static final int USERNAME_PREFIX = 1 << 4;
+    private static final int USERNAME_IGNORE_CASE = 1 << 5;
+    private static final int SHAPES = 1 << 6;
+
+    private static final String SELECT = "select new " + MemberTeamDto.class.getName()
+            + "(m.id, m.username, m.age, t.id, t.name)"
+            + " from Member m left join m.team t";
+
+    // 오라클 드라이버 기본값(10)이면 큰 결과에서 왕복이 너무 많다.
+    private static final int ROW_FETCH_SIZE = 500;
+    private static final String TEAM_IDS = "{teamIds}";
+
+    private final String[] plans = new String[SHAPES];
+    private final String[] sqlPlans = new String[SHAPES];
+    private final TeamNameResolver teamNameResolver;
+
+    public MemberSearchPlanCache(TeamNameResolver teamNameResolver, EntityManagerFactory emf) {
+        this.teamNameResolver = teamNameResolver;
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        AbstractEntityPersister memberTable = (AbstractEntityPersister) sessionFactory.getMetamodel().entityPersister(Member.class);
+        AbstractEntityPersister teamTable = (AbstractEntityPersister) sessionFactory.getMetamodel().entityPersister(Team.class);
+        for (int shape = 0; shape < SHAPES; shape++) {
+            plans[shape] = render(shape);
+            sqlPlans[shape] = renderSql(shape, memberTable, teamTable);
+        }
+    }
+
+    /*
+     모든 모양의 JPQL 을 실행하지 않고 Hibernate 쿼리 플랜 캐시에 올린다. (QueryWarmup)
+     teamName 모양은 실제 팀이 있어야 실행되므로 실행해서는 데울 수 없다.
+     */
+    public void compile(EntityManager em) {
+        for (String plan : plans) {
+            em.createQuery(plan, MemberTeamDto.class);
+        }
+    }
+
+    public List<MemberTeamDto> search(EntityManager em, MemberSearchCondition condition) {
+        int shape = shapeOf(condition);
+        List<Long> teamIds = Collections.emptyList();
+        if ((shape & TEAM_NAME) != 0) {
+            teamIds = teamNameResolver.findIdsByName(condition.getTeamName());
+            if (teamIds.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        TypedQuery<MemberTeamDto> query = em.createQuery(plans[shape], MemberTeamDto.class);
+
+        if ((shape & USERNAME) != 0) {
+            String username = MemberConditions.usernameValue(condition.getUsername(), condition.getUsernameMatchOrDefault());
+            query.setParameter("username", username);
+            if ((shape & USERNAME_PREFIX) != 0) {
+                query.setParameter("usernameTo", MemberConditions.prefixUpperBound(username));
+            }
+        }
+        if ((shape & TEAM_NAME) != 0) {
+            query.setParameter("teamIds", teamIds);
+        }
+        if ((shape & AGE_GOE) != 0) {
+            query.setParameter("ageGoe", condition.getAgeGoe());
+        }
+        if ((shape & AGE_LOE) != 0) {
+            query.setParameter("ageLoe", condition.getAgeLoe());
+        }
+        return query.getResultList();
+    }
+
+    public List<MemberTeamDto> searchRows(EntityManager em, MemberSearchCondition condition) {
+        int shape = shapeOf(condition);
+        List<Long> teamIds = Collections.emptyList();
+        if ((shape & TEAM_NAME) != 0) {
+            teamIds = teamNameResolver.findIdsByName(condition.getTeamName());
+            if (teamIds.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        Session session = em.unwrap(Session.class);
+        // JPQL 처럼 아직 flush 되지 않은 변경이 조회 결과에 보이도록 한다.
+        if (session.getHibernateFlushMode() != FlushMode.MANUAL && session.isDirty()) {
+            session.flush();
+        }
+
+        String sql = sqlPlans[shape].replace(TEAM_IDS, placeholders(teamIds.size()));
+        List<Long> boundTeamIds = teamIds;
+        return session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, shape, condition, boundTeamIds);
+                statement.setFetchSize(ROW_FETCH_SIZE);
+                try (ResultSet rs = statement.executeQuery()) {
+                    List<MemberTeamDto> result = new ArrayList<>();
+                    while (rs.next()) {
+                        result.add(toDto(rs));
+                    }
+                    return result;
+                }
+            }
+        });
+    }
+
+    private void bind(PreparedStatement statement, int shape, MemberSearchCondition condition,
+                      List<Long> teamIds) throws SQLException {
+        int index = 1;
+        if ((shape & USERNAME) != 0) {
+            String username = MemberConditions.usernameValue(condition.getUsername(), condition.getUsernameMatchOrDefault());
+            statement.setString(index++, username);
+            if ((shape & USERNAME_PREFIX) != 0) {
+                statement.setString(index++, MemberConditions.prefixUpperBound(username));
+            }
+        }
+        if ((shape & TEAM_NAME) != 0) {
+            for (Long teamId : teamIds) {
+                statement.setLong(index++, teamId);
+            }
+        }
+        if ((shape & AGE_GOE) != 0) {
+            statement.setInt(index++, condition.getAgeGoe());
+        }
+        if ((shape & AGE_LOE) != 0) {
+            statement.setInt(index, condition.getAgeLoe());
+        }
+    }
+
+    private MemberTeamDto toDto(ResultSet rs) throws SQLException {
+        long memberId = rs.getLong(1);
+        String username = rs.getString(2);
+        int age = rs.getInt(3);
+        long teamId = rs.getLong(4);
+        Long nullableTeamId = rs.wasNull() ? null : teamId;
+        return new MemberTeamDto(memberId, username, age, nullableTeamId, rs.getString(5));
+    }
+
+    public String plan(MemberSearchCondition condition) {
+        return plans[shapeOf(condition)];
+    }
+
+    private int shapeOf(MemberSearchCondition condition) {
+        int shape = 0;
+        if (hasText(condition.getUsername())) {
+            shape |= USERNAME;
+            UsernameMatch match = condition.getUsernameMatchOrDefault();
+            if (match.isPrefix()) {
+                shape |= USERNAME_PREFIX;
+            }
+            if (match.isIgnoreCase()) {
+                shape |= USERNAME_IGNORE_CASE;
+            }
+        }
+        if (hasText(condition.getTeamName())) {
+            shape |= TEAM_NAME;
+        }
+        if (condition.getAgeGoe() != null) {
+            shape |= AGE_GOE;
+        }
+        if (condition.getAgeLoe() != null) {
+            shape |= AGE_LOE;
+        }
+        return shape;
+    }
+
+    private String render(int shape) {
+        StringBuilder where = new StringBuilder();
+        if ((shape & USERNAME) != 0) {
+            String username = (shape & USERNAME_IGNORE_CASE) != 0 ? "lower(m.username)" : "m.username";
+            if ((shape & USERNAME_PREFIX) != 0) {
+                and(where, username + " >= :username and " + username + " < :usernameTo");
+            } else {
+                and(where, username + " = :username");
+            }
+        }
+        if ((shape & TEAM_NAME) != 0) {
+            and(where, "m.team.id in :teamIds");
+        }
+        if ((shape & AGE_GOE) != 0) {
+            and(where, "m.age >= :ageGoe");
+        }
+        if ((shape & AGE_LOE) != 0) {
+            and(where, "m.age <= :ageLoe");
+        }
+        return where.length() == 0 ? SELECT : SELECT + " where " + where;
+    }
+
+    /*
+     team 의 id 는 member 의 FK 컬럼을 그대로 읽어서 member 쪽은 (team_id, age, username, member_id) 인덱스만으로 끝난다.
+     */
+    private String renderSql(int shape, AbstractEntityPersister memberTable, AbstractEntityPersister teamTable) {
+        String memberId = "m." + memberTable.getIdentifierColumnNames()[0];
+        String username = "m." + memberTable.getPropertyColumnNames("username")[0];
+        String age = "m." + memberTable.getPropertyColumnNames("age")[0];
+        String teamId = "m." + memberTable.getPropertyColumnNames("team")[0];
+        String select = "select " + memberId + ", " + username + ", " + age + ", " + teamId
+                + ", t." + teamTable.getPropertyColumnNames("name")[0]
+                + " from " + memberTable.getTableName() + " m"
+                + " left outer join " + teamTable.getTableName() + " t"
+                + " on t." + teamTable.getIdentifierColumnNames()[0] + " = " + teamId;
+
+        StringBuilder where = new StringBuilder();
+        if ((shape & USERNAME) != 0) {
+            String column = (shape & USERNAME_IGNORE_CASE) != 0 ? "lower(" + username + ")" : username;
+            if ((shape & USERNAME_PREFIX) != 0) {
+                and(where, column + " >= ? and " + column + " < ?");
+            } else {
+                and(where, column + " = ?");
+            }
+        }
+        if ((shape & TEAM_NAME) != 0) {
+            and(where, teamId + " in (" + TEAM_IDS + ")");
+        }
+        if ((shape & AGE_GOE) != 0) {
+            and(where, age + " >= ?");
+        }
+        if ((shape & AGE_LOE) != 0) {
+            and(where, age + " <= ?");
+        }
+        return where.length() == 0 ? select : select + " where " + where;
+    }
+
+    private String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+
+    private void and(StringBuilder where, String predicate) {
+        if (where.length() > 0) {
+            where.append(" and ");
+        }
+        where.append(predicate);
+    }
+}
@@ -1,19 +1,17 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
+import study.querydsl.repository.support.FetchPlan;
 import study.querydsl.repository.support.Querydsl4RepositorySupport;
 
 import java.util.List;
 
-import static org.springframework.util.StringUtils.hasText;
 import static org.springframework.util.StringUtils.quote;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
@@ -21,8 +19,11 @@ import static study.querydsl.entity.QTeam.team;
 @Repository
 public class MemberTestRepository extends Querydsl4RepositorySupport {
 
-    public MemberTestRepository(){
+    private final MemberConditions conditions;
+
+    public MemberTestRepository(MemberConditions conditions){
         super(Member.class);
+        this.conditions = conditions;
     }
 
     public List<Member> basicSelect(){
@@ -37,70 +38,76 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
     }
 
     public Page<Member> searchPageByApplyPage(MemberSearchCondition condition, Pageable pageable){
-        JPAQuery<Member> query = selectFrom(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                );
+        JPAQuery<Member> query = conditions.apply(selectFrom(member), condition);
 
         List<Member> content = getQuerydsl().applyPagination(pageable, query)
                 .fetch();
 
-        return PageableExecutionUtils.getPage(content, pageable, query::fetchCount);
+        return getQueryMetrics().getPage(content, pageable, query::fetchCount);
     }
 
     public Page<Member> applyPagination(MemberSearchCondition condition, Pageable pageable){
         return super.applyPagination(pageable, query ->
-                query.selectFrom(member)
-                        .leftJoin(member.team, team)
-                        .where(usernameEq(condition.getUsername()),
-                                teamNameEq(condition.getTeamName()),
-                                ageGoe(condition.getAgeGoe()),
-                                ageLoe(condition.getAgeLoe())
-                        )
+                conditions.apply(query.selectFrom(member), condition)
         );
     }
 
     public Page<Member> applyPagination2(MemberSearchCondition condition, Pageable pageable){
         return super.applyPagination(pageable, contentQuery ->
-                contentQuery.selectFrom(member)
-                        .leftJoin(member.team, team)
-                        .where(usernameEq(condition.getUsername()),
-                                teamNameEq(condition.getTeamName()),
-                                ageGoe(condition.getAgeGoe()),
-                                ageLoe(condition.getAgeLoe())
-                        ), countQuery -> countQuery
-                .select(member.id)
-                .from(member)
-                .leftJoin(member.team, team)
-                        .where(usernameEq(condition.getUsername()),
-                                teamNameEq(condition.getTeamName()),
-                                ageGoe(condition.getAgeGoe()),
-                                ageLoe(condition.getAgeLoe())
-        ));
+                conditions.apply(contentQuery.selectFrom(member), condition),
+                countQuery -> conditions.apply(countQuery
+                        .select(member.id)
+                        .from(member), condition)
+        );
     }
 
-
-    private BooleanExpression ageBetween(int a, int b){
-        return ageGoe(a).and(ageLoe(b));
+    public Page<Member> applyPaginationAsync(MemberSearchCondition condition, Pageable pageable){
+        return super.applyPaginationAsync(pageable, contentQuery ->
+                conditions.apply(contentQuery.selectFrom(member), condition),
+                countQuery -> conditions.apply(countQuery
+                        .select(member.id)
+                        .from(member), condition)
+        );
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    /*
+     id 만 정렬/페이징한 뒤 해당 회원만 team 과 fetch join 해서 읽는다.
+     */
+    public Page<Member> applyDeferredPagination(MemberSearchCondition condition, Pageable pageable){
+        return super.applyDeferredPagination(pageable, member.id,
+                idQuery -> conditions.apply(idQuery
+                        .select(member.id)
+                        .from(member), condition),
+                (contentQuery, ids) -> contentQuery
+                        .selectFrom(member)
+                        .leftJoin(member.team, team).fetchJoin()
+                        .where(member.id.in(ids)),
+                Member::getId,
+                countQuery -> conditions.apply(countQuery
+                        .select(member.id)
+                        .from(member), condition)
+        );
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+    /*
+     associations(team, team.members ...) 의 조회 방식을 FetchPlanner 가 결정한다.
+     teamName 조건은 member.team.id 로 바뀌므로 team 조인이 필요 없다.
+     */
+    public Page<Member> searchWithFetchPlan(MemberSearchCondition condition, Pageable pageable, String... associations){
+        return searchWithFetchPlan(condition, pageable, false, associations);
     }
 
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
-    }
+    // readOnly 이고 ToOne 만 있으면 DTO_PROJECTION 이 권장되지만 엔티티를 조회하므로 fetch join 으로 읽는다.
+    public Page<Member> searchWithFetchPlan(MemberSearchCondition condition, Pageable pageable, boolean readOnly,
+                                            String... associations){
+        FetchPlan fetchPlan = getFetchPlanner().plan(member, pageable, readOnly, associations);
 
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+        return super.applyPagination(pageable, fetchPlan, contentQuery ->
+                conditions.apply(contentQuery.selectFrom(member), condition),
+                countQuery -> conditions.apply(countQuery
+                        .select(member.id)
+                        .from(member), condition)
+        );
     }
 
 
@@ -0,0 +1,392 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.TeamStatsProperties;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import static study.querydsl.entity.QMember.member;
+
+/*
+ 팀별 회원 나이 통계(count, sum, avg, max, min)를 메모리에 유지한다. (QuerydslBasicTest.group/aggregation 의 GROUP BY 대신)
+ - Member 의 insert/update/delete 가 커밋되면 Hibernate post-commit 리스너로 팀별 LongAdder 카운터를 갱신한다.
+ - max/min 은 팀별 나이 히스토그램에서 구하므로 삭제가 있어도 정확하다.
+ - 벌크 쿼리처럼 이벤트가 나가지 않는 변경은 invalidate() 로 알리고, 다시 읽는다.
+   get/getAll 은 조회 스레드에서 한번만 다시 읽고, countTeamOnly 는 기다리지 않고 empty(count 쿼리)를 반환하며 reconciler 스레드에 맡긴다.
+ - reconcileIntervalMillis 마다 DB 와 다시 맞춘다. (다른 인스턴스의 변경)
+ 재구성(reconcile) 중에 들어온 이벤트는 순번을 붙여 버퍼에 모아 두고, 새 map 으로 바꿀 때 다음처럼 처리한다.
+ - GROUP BY 가 끝난 뒤의 이벤트 : 스냅샷에 없으므로 새 map 에 다시 적용한다.
+ - GROUP BY 실행 중의 이벤트 : 스냅샷에 들어갔는지 알 수 없으므로 적용하지 않고 다음 주기 reconcile 에 맡긴다.
+   (쓰기가 계속 있어도 조회가 전체 GROUP BY 를 기다리지 않게 한다. 그 사이에는 몇 건 차이가 날 수 있다)
+ 이벤트 적용과 map 교체는 lock 으로 나눠서 교체 중에 이전 map 에 적용되어 사라지는 이벤트가 없다.
+ */
+@Slf4j
+@Component
+public class TeamMemberStats implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener, DisposableBean {
+
+    private final EntityManagerFactory emf;
+    private final TeamNameResolver teamNameResolver;
+    private final TeamStatsProperties properties;
+    private final ScheduledExecutorService reconciler;
+
+    private volatile ConcurrentMap<Long, Stats> teams = new ConcurrentHashMap<>();
+    private volatile boolean stale = true;
+
+    // 이벤트 적용(read lock, 동시 실행) 과 재구성 시작/map 교체(write lock) 를 나눈다.
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Queue<Change> pending = new ConcurrentLinkedQueue<>();
+    private boolean reconciling;
+    private final AtomicBoolean reconcileRequested = new AtomicBoolean();
+
+    public TeamMemberStats(EntityManagerFactory emf, TeamNameResolver teamNameResolver, TeamStatsProperties properties) {
+        this.emf = emf;
+        this.teamNameResolver = teamNameResolver;
+        this.properties = properties;
+        this.reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "team-stats-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (properties.isEnabled()) {
+            EventListenerRegistry listeners = emf.unwrap(SessionFactoryImplementor.class)
+                    .getServiceRegistry()
+                    .getService(EventListenerRegistry.class);
+            listeners.appendListeners(EventType.POST_COMMIT_INSERT, this);
+            listeners.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+            listeners.appendListeners(EventType.POST_COMMIT_DELETE, this);
+
+            long interval = properties.getReconcileIntervalMillis();
+            reconciler.scheduleWithFixedDelay(this::scheduledReconcile, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public TeamStatsDto get(Long teamId) {
+        Stats stats = current().get(teamId);
+        return stats != null ? stats.toDto(teamId) : new TeamStatsDto(teamId, 0, 0, null, null);
+    }
+
+    public List<TeamStatsDto> getAll() {
+        return current().entrySet().stream()
+                .map(entry -> entry.getValue().toDto(entry.getKey()))
+                .filter(dto -> dto.getCount() > 0)
+                .collect(Collectors.toList());
+    }
+
+    /*
+     teamName 만 있는 검색의 total count
+     쓰기 트랜잭션 안에서는 아직 커밋되지 않은 변경이 통계에 없으므로 사용하지 않는다. (empty -> count 쿼리)
+     stale 이면 조회 스레드에서 다시 읽지 않고 reconciler 스레드에 맡긴 뒤 empty 를 반환한다.
+     */
+    public OptionalLong countTeamOnly(MemberSearchCondition condition) {
+        if (!properties.isEnabled()) {
+            return OptionalLong.empty();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return OptionalLong.empty();
+        }
+
+        MemberSearchCondition normalized = condition.normalize();
+        if (normalized.getTeamName() == null || normalized.getUsername() != null
+                || normalized.getAgeGoe() != null || normalized.getAgeLoe() != null) {
+            return OptionalLong.empty();
+        }
+
+        if (stale) {
+            requestReconcile();
+            return OptionalLong.empty();
+        }
+
+        Map<Long, Stats> snapshot = teams;
+        long count = 0;
+        for (Long teamId : teamNameResolver.findIdsByName(normalized.getTeamName())) {
+            Stats stats = snapshot.get(teamId);
+            count += stats != null ? stats.count.sum() : 0;
+        }
+        return OptionalLong.of(count);
+    }
+
+    /*
+     엔티티 이벤트 없이 회원이 바뀌었을 때(벌크 update/delete) 호출한다.
+     트랜잭션 안이면 커밋 전에 다시 읽지 않도록 트랜잭션이 끝난 뒤에도 한번 더 표시한다.
+     */
+    public void invalidate() {
+        stale = true;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    stale = true;
+                }
+            });
+        }
+    }
+
+    private Map<Long, Stats> current() {
+        if (stale) {
+            reconcileIfStale();
+        }
+        return teams;
+    }
+
+    // 동시에 stale 을 본 조회들이 GROUP BY 를 한번씩 실행하지 않도록 lock 안에서 다시 확인한다.
+    private synchronized void reconcileIfStale() {
+        if (stale) {
+            reconcile();
+        }
+    }
+
+    private void requestReconcile() {
+        if (reconcileRequested.compareAndSet(false, true)) {
+            reconciler.execute(() -> {
+                reconcileRequested.set(false);
+                try {
+                    reconcileIfStale();
+                } catch (RuntimeException e) {
+                    log.warn("team stats reconcile failed", e);
+                }
+            });
+        }
+    }
+
+    private void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.warn("team stats reconcile failed", e);
+        }
+    }
+
+    private synchronized void reconcile() {
+        // 다시 읽는 중에 들어온 invalidate() 는 다음 조회 때 반영된다.
+        stale = false;
+        long snapshotStart = beginReconcile();
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Tuple> rows = new JPAQueryFactory(em)
+                    .select(member.team.id, member.age, member.count())
+                    .from(member)
+                    .where(member.team.isNotNull())
+                    .groupBy(member.team.id, member.age)
+                    .fetch();
+
+            ConcurrentMap<Long, Stats> fresh = new ConcurrentHashMap<>();
+            for (Tuple row : rows) {
+                fresh.computeIfAbsent(row.get(member.team.id), teamId -> new Stats())
+                        .add(row.get(member.age), row.get(member.count()));
+            }
+            swap(fresh, snapshotStart, sequence.get());
+        } catch (RuntimeException e) {
+            stale = true;
+            endReconcile();
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    private long beginReconcile() {
+        swapLock.writeLock().lock();
+        try {
+            pending.clear();
+            reconciling = true;
+            return sequence.get();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private void swap(ConcurrentMap<Long, Stats> fresh, long snapshotStart, long snapshotEnd) {
+        swapLock.writeLock().lock();
+        try {
+            // snapshotStart ~ snapshotEnd 사이의 이벤트는 다음 주기 reconcile 에서 맞춰진다.
+            for (Change change : pending) {
+                if (change.sequence > snapshotEnd) {
+                    fresh.computeIfAbsent(change.teamId, id -> new Stats()).add(change.age, change.delta);
+                }
+            }
+            teams = fresh;
+            pending.clear();
+            reconciling = false;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private void endReconcile() {
+        swapLock.writeLock().lock();
+        try {
+            pending.clear();
+            reconciling = false;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (isMember(event.getPersister())) {
+            apply(event.getPersister(), event.getState(), 1);
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!isMember(event.getPersister())) {
+            return;
+        }
+        // merge 등으로 이전 값을 모르면 다음 조회 때 DB 에서 다시 읽는다.
+        if (event.getOldState() == null) {
+            stale = true;
+            return;
+        }
+        apply(event.getPersister(), event.getOldState(), -1);
+        apply(event.getPersister(), event.getState(), 1);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (isMember(event.getPersister())) {
+            apply(event.getPersister(), event.getDeletedState(), -1);
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return isMember(persister);
+    }
+
+    private boolean isMember(EntityPersister persister) {
+        return persister.getMappedClass() == Member.class;
+    }
+
+    private void apply(EntityPersister persister, Object[] state, int delta) {
+        Long teamId = teamIdOf(state[persister.getEntityMetamodel().getPropertyIndex("team")]);
+        if (teamId == null) {
+            return;
+        }
+        int age = (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+
+        swapLock.readLock().lock();
+        try {
+            long seq = sequence.incrementAndGet();
+            teams.computeIfAbsent(teamId, id -> new Stats()).add(age, delta);
+            if (reconciling) {
+                pending.add(new Change(seq, teamId, age, delta));
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private Long teamIdOf(Object team) {
+        if (team == null) {
+            return null;
+        }
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return ((Team) team).getId();
+    }
+
+    @Override
+    public void destroy() {
+        reconciler.shutdownNow();
+    }
+
+    private static class Change {
+
+        private final long sequence;
+        private final Long teamId;
+        private final int age;
+        private final int delta;
+
+        private Change(long sequence, Long teamId, int age, int delta) {
+            this.sequence = sequence;
+            this.teamId = teamId;
+            this.age = age;
+            this.delta = delta;
+        }
+    }
+
+    private static class Stats {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder ageSum = new LongAdder();
+        private final ConcurrentMap<Integer, LongAdder> ages = new ConcurrentHashMap<>();
+
+        private void add(int age, long members) {
+            ages.computeIfAbsent(age, key -> new LongAdder()).add(members);
+            count.add(members);
+            ageSum.add(age * members);
+        }
+
+        // 나이 종류 수만큼만 보므로 회원 수와 상관없다.
+        private TeamStatsDto toDto(Long teamId) {
+            Integer max = null;
+            Integer min = null;
+            for (Map.Entry<Integer, LongAdder> entry : ages.entrySet()) {
+                if (entry.getValue().sum() <= 0) {
+                    continue;
+                }
+                int age = entry.getKey();
+                max = max == null || age > max ? age : max;
+                min = min == null || age < min ? age : min;
+            }
+            return new TeamStatsDto(teamId, count.sum(), ageSum.sum(), max, min);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+ teamName 조건을 team 조인 없이 member.team.id 조건으로 바꾼다.
+ 팀 이름 -> id 조회는 Hibernate 쿼리 캐시(query.teamIdByName 리전)에 올라가고,
+ Team 이 변경되면 Hibernate 가 update-timestamps 로 자동 무효화한다.
+ */
+@Repository
+public class TeamNameResolver {
+
+    private static final String REGION = "query.teamIdByName";
+
+    private final JPAQueryFactory queryFactory;
+
+    public TeamNameResolver(JPAQueryFactory queryFactory) {
+        this.queryFactory = queryFactory;
+    }
+
+    public List<Long> findIdsByName(String teamName) {
+        return queryFactory
+                .select(team.id)
+                .from(team)
+                .where(team.name.eq(teamName))
+                .setHint(QueryHints.CACHEABLE, true)
+                .setHint(QueryHints.CACHE_REGION, REGION)
+                .fetch();
+    }
+
+    public BooleanExpression teamNameEq(String teamName) {
+        if (!hasText(teamName)) {
+            return null;
+        }
+        List<Long> teamIds = findIdsByName(teamName);
+        // 해당 이름의 팀이 없으면 아무것도 조회되지 않아야 한다. (PK 는 null 이 아니므로 항상 false, boolean 바인딩 없이 모든 DB 에서 동작)
+        return teamIds.isEmpty() ? member.id.isNull() : member.team.id.in(teamIds);
+    }
+}
@@ -0,0 +1,156 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPQLQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 검색 조건 객체(C)의 필드를 Predicate 로 바꾸는 규칙 모음
+ * 규칙마다 필요한 연관관계(join)를 선언하고, 실제로 조건이 들어온 규칙과 projection 에서 쓰는
+ * 연관관계만 left join 한다. (조건도 projection 도 없으면 조인하지 않는다)
+ *
+ * <pre>
+ * ConditionEngine.&lt;MemberSearchCondition&gt;builder()
+ *         .join("team", member.team, team)
+ *         .rule(MemberSearchCondition::getUsername, v -&gt; hasText(v), member.username::eq)
+ *         .rule(MemberSearchCondition::getTeamName, v -&gt; hasText(v), team.name::eq, "team")
+ *         .build();
+ * </pre>
+ */
+public class ConditionEngine<C> {
+
+    private final Map<String, Join> joins;
+    private final List<Rule<C, ?>> rules;
+
+    private ConditionEngine(Map<String, Join> joins, List<Rule<C, ?>> rules) {
+        this.joins = joins;
+        this.rules = rules;
+    }
+
+    public static <C> Builder<C> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * 값이 들어온 규칙의 Predicate 만 반환한다.
+     */
+    public Predicate[] predicates(C condition) {
+        List<Predicate> predicates = new ArrayList<>();
+        for (Rule<C, ?> rule : rules) {
+            Predicate predicate = rule.toPredicate(condition);
+            if (predicate != null) {
+                predicates.add(predicate);
+            }
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    public Predicate toPredicate(C condition) {
+        return ExpressionUtils.allOf(predicates(condition));
+    }
+
+    public Set<String> requiredJoins(C condition, String... projected) {
+        Set<String> required = new LinkedHashSet<>(Arrays.asList(projected));
+        for (Rule<C, ?> rule : rules) {
+            if (rule.isPresent(condition)) {
+                required.addAll(rule.joins);
+            }
+        }
+        return required;
+    }
+
+    /**
+     * 필요한 연관관계만 left join 하고 조건을 where 에 추가한다.
+     *
+     * @param projected select 절에서 사용하는 연관관계 이름
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <Q extends JPQLQuery<?>> Q apply(Q query, C condition, String... projected) {
+        for (String name : requiredJoins(condition, projected)) {
+            Join join = joins.get(name);
+            if (join == null) {
+                throw new IllegalArgumentException("등록되지 않은 연관관계입니다. join=" + name);
+            }
+            query.leftJoin((EntityPath) join.target, (Path) join.alias);
+        }
+        query.where(predicates(condition));
+        return query;
+    }
+
+    private static class Join {
+        private final EntityPath<?> target;
+        private final Path<?> alias;
+
+        Join(EntityPath<?> target, Path<?> alias) {
+            this.target = target;
+            this.alias = alias;
+        }
+    }
+
+    private static class Rule<C, V> {
+        private final Function<C, V> getter;
+        private final java.util.function.Predicate<V> present;
+        private final Function<V, ? extends Predicate> predicate;
+        private final List<String> joins;
+
+        Rule(Function<C, V> getter, java.util.function.Predicate<V> present,
+             Function<V, ? extends Predicate> predicate, List<String> joins) {
+            this.getter = getter;
+            this.present = present;
+            this.predicate = predicate;
+            this.joins = joins;
+        }
+
+        boolean isPresent(C condition) {
+            return present.test(getter.apply(condition));
+        }
+
+        Predicate toPredicate(C condition) {
+            V value = getter.apply(condition);
+            return present.test(value) ? predicate.apply(value) : null;
+        }
+    }
+
+    public static class Builder<C> {
+        private final Map<String, Join> joins = new LinkedHashMap<>();
+        private final List<Rule<C, ?>> rules = new ArrayList<>();
+
+        public <P> Builder<C> join(String name, EntityPath<P> target, Path<P> alias) {
+            joins.put(name, new Join(target, alias));
+            return this;
+        }
+
+        /**
+         * @param getter    조건 객체에서 값을 꺼낸다.
+         * @param present   값이 들어왔는지 (false 면 조건에서 제외)
+         * @param predicate 값으로 Predicate 를 만든다.
+         * @param joins     Predicate 가 사용하는 연관관계 이름
+         */
+        public <V> Builder<C> rule(Function<C, V> getter, java.util.function.Predicate<V> present,
+                                   Function<V, ? extends Predicate> predicate, String... joins) {
+            for (String join : joins) {
+                if (!this.joins.containsKey(join)) {
+                    throw new IllegalArgumentException("등록되지 않은 연관관계입니다. join=" + join);
+                }
+            }
+            rules.add(new Rule<>(getter, present, predicate, Arrays.asList(joins)));
+            return this;
+        }
+
+        public ConditionEngine<C> build() {
+            return new ConditionEngine<>(Collections.unmodifiableMap(joins), Collections.unmodifiableList(rules));
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 검색 조건별 total count 캐시 설정
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.count-cache")
+public class CountCacheProperties {
+
+    private long ttlSeconds = 30;
+    private long maximumSize = 1000;
+}
@@ -0,0 +1,20 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * count 쿼리 비동기 실행 설정
+ * count 는 별도 EntityManager(커넥션)에서 실행되므로
+ * maxPoolSize 는 커넥션 풀 크기보다 충분히 작게 잡아야 한다.
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.count-query")
+public class CountQueryProperties {
+
+    private int corePoolSize = 2;
+    private int maxPoolSize = 4;
+    private int queueCapacity = 100;
+    private long timeoutMillis = 3000;
+}
@@ -0,0 +1,22 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 커넥션 풀 / Oracle JDBC 튜닝 설정
+ * 풀 크기는 (코어 수 * poolSizePerCore + effectiveSpindleCount) 로 정하고 최소 idle 도 같은 값으로 고정한다.
+ * implicitStatementCacheSize, defaultRowPrefetch 는 Oracle 드라이버 커넥션 속성으로 넘긴다.
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.datasource")
+public class DataSourceTuningProperties {
+
+    private boolean enabled = true;
+    private int poolSizePerCore = 2;
+    private int effectiveSpindleCount = 1;
+    private long connectionTimeoutMillis = 3000;
+    private int implicitStatementCacheSize = 100;
+    private int defaultRowPrefetch = 100;
+}
@@ -0,0 +1,43 @@
+package study.querydsl.repository.support;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * deferred join(ID 먼저) 페이징의 2단계
+ * 1단계에서 정렬/offset/limit 으로 고른 id 의 row 만 조인해서 읽고, IN 절은 순서를 보장하지 않으므로 1단계 순서로 다시 정렬한다.
+ */
+public final class DeferredJoin {
+
+    // Oracle IN 목록 최대 1000
+    private static final int IN_CHUNK_SIZE = 1000;
+
+    private DeferredJoin() {
+    }
+
+    public static <T, ID> List<T> fetch(List<ID> ids, Function<List<ID>, List<T>> rowsByIds, Function<T, ID> idOf) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<ID, T> rows = new HashMap<>(ids.size() * 2);
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            for (T row : rowsByIds.apply(ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size())))) {
+                rows.putIfAbsent(idOf.apply(row), row);
+            }
+        }
+
+        // 1단계와 2단계 사이에 삭제된 row 는 빠진다.
+        List<T> content = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            T row = rows.get(id);
+            if (row != null) {
+                content.add(row);
+            }
+        }
+        return content;
+    }
+}
@@ -0,0 +1,143 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.PropertyAccessorFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * FetchPlanner 가 정한 연관관계별 조회 전략
+ * 1. applyFetchJoins : 본 쿼리에 FETCH_JOIN 연관관계를 left join fetch 로 붙인다.
+ *    별칭은 경로의 '.' 을 '_' 로 바꾼 이름이다. (team -> team, team.members -> team_members)
+ *    DTO_PROJECTION 은 권장일 뿐이므로 엔티티를 조회하는 본 쿼리에 적용되면 FETCH_JOIN 으로 처리한다. (지연 로딩 N+1 방지)
+ * 2. loadBatches : 본 쿼리 결과를 기준으로 BATCH_LOAD 컬렉션을 IN 절로 한번에 초기화한다.
+ *    같은 영속성 컨텍스트(트랜잭션) 안에서 호출해야 한다.
+ */
+public class FetchPlan {
+
+    private final JPAQueryFactory queryFactory;
+    private final Class<?> rootType;
+    private final String rootAlias;
+    private final List<Step> steps;
+    private final int batchSize;
+
+    FetchPlan(JPAQueryFactory queryFactory, Class<?> rootType, String rootAlias, List<Step> steps, int batchSize) {
+        this.queryFactory = queryFactory;
+        this.rootType = rootType;
+        this.rootAlias = rootAlias;
+        this.steps = steps;
+        this.batchSize = batchSize;
+    }
+
+    public FetchStrategy strategyOf(String association) {
+        for (Step step : steps) {
+            if (step.path.equals(association)) {
+                return step.strategy;
+            }
+        }
+        return null;
+    }
+
+    public boolean isFetchJoined(String association) {
+        return strategyOf(association) == FetchStrategy.FETCH_JOIN;
+    }
+
+    public boolean isProjection() {
+        return !steps.isEmpty() && steps.stream().allMatch(step -> step.strategy == FetchStrategy.DTO_PROJECTION);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <T> JPAQuery<T> applyFetchJoins(JPAQuery<T> query) {
+        boolean collectionJoined = false;
+        for (Step step : steps) {
+            if (step.strategy != FetchStrategy.FETCH_JOIN && step.strategy != FetchStrategy.DTO_PROJECTION) {
+                continue;
+            }
+            PathBuilder parent = parentPath(step);
+            PathBuilder alias = new PathBuilder(step.type, step.alias());
+            if (step.collection) {
+                query.leftJoin((CollectionExpression) parent.getCollection(step.attribute, step.type), alias).fetchJoin();
+                collectionJoined = true;
+            } else {
+                query.leftJoin((EntityPath) parent.get(step.attribute, step.type), alias).fetchJoin();
+            }
+        }
+        // 컬렉션 fetch join 은 부모 row 가 중복되므로 distinct 로 제거한다.
+        if (collectionJoined) {
+            query.distinct();
+        }
+        return query;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void loadBatches(List<?> roots) {
+        for (Step step : steps) {
+            if (step.strategy != FetchStrategy.BATCH_LOAD) {
+                continue;
+            }
+            List<Object> owners = owners(roots, step.parent);
+            for (int from = 0; from < owners.size(); from += batchSize) {
+                List<Object> chunk = owners.subList(from, Math.min(from + batchSize, owners.size()));
+                PathBuilder owner = new PathBuilder(step.ownerType, "batchOwner");
+                queryFactory
+                        .selectFrom(owner)
+                        .distinct()
+                        .leftJoin((CollectionExpression) owner.getCollection(step.attribute, step.type),
+                                new PathBuilder(step.type, "batchElement")).fetchJoin()
+                        .where(owner.in(chunk))
+                        .fetch();
+            }
+        }
+    }
+
+    private PathBuilder<?> parentPath(Step step) {
+        return step.parent == null
+                ? new PathBuilder<>(rootType, rootAlias)
+                : new PathBuilder<>(step.ownerType, step.parent.replace('.', '_'));
+    }
+
+    private List<Object> owners(List<?> roots, String parent) {
+        if (parent == null) {
+            return new ArrayList<>(roots);
+        }
+        Set<Object> owners = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Object root : roots) {
+            Object owner = PropertyAccessorFactory.forBeanPropertyAccess(root).getPropertyValue(parent);
+            if (owner != null) {
+                owners.add(owner);
+            }
+        }
+        return new ArrayList<>(owners);
+    }
+
+    static class Step {
+        final String path;
+        final String parent;
+        final String attribute;
+        final Class<?> ownerType;
+        final Class<?> type;
+        final boolean collection;
+        FetchStrategy strategy;
+
+        Step(String path, String parent, String attribute, Class<?> ownerType, Class<?> type, boolean collection) {
+            this.path = path;
+            this.parent = parent;
+            this.attribute = attribute;
+            this.ownerType = ownerType;
+            this.type = type;
+            this.collection = collection;
+        }
+
+        String alias() {
+            return path.replace('.', '_');
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package study.querydsl.repository.support;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.core.types.dsl.Wildcard;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.PluralAttribute;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 요청한 연관관계(team, team.members ...) 별로 fetch join / IN 배치 로딩 / DTO 조회 중 하나를 고른다.
+ * - ToOne : 행이 늘어나지 않으므로 fetch join (readOnly 이고 모두 ToOne 이면 DTO 조회를 권장, 엔티티 쿼리에서는 fetch join)
+ * - 컬렉션 + 페이징 : fetch join 하면 Hibernate 가 메모리에서 페이징하므로(HHH000104) 항상 IN 배치 로딩
+ * - 컬렉션 + 페이징 없음 : 부모당 평균 자식 수가 작으면 fetch join, 크면 IN 배치 로딩
+ */
+@Component
+public class FetchPlanner {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final FetchPlannerProperties properties;
+    private final Cache<String, Double> cardinalities;
+
+    public FetchPlanner(EntityManager em, JPAQueryFactory queryFactory, FetchPlannerProperties properties) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.properties = properties;
+        this.cardinalities = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getCardinalityTtlSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    public FetchPlan plan(EntityPath<?> root, Pageable pageable, boolean readOnly, String... associations) {
+        Map<String, FetchPlan.Step> steps = new LinkedHashMap<>();
+        for (String association : associations) {
+            resolve(root.getType(), association, steps);
+        }
+
+        List<FetchPlan.Step> ordered = new ArrayList<>(steps.values());
+        ordered.sort(Comparator.comparingInt(step -> step.path.split("\\.").length));
+
+        boolean allToOne = ordered.stream().noneMatch(step -> step.collection);
+        for (FetchPlan.Step step : ordered) {
+            step.strategy = decide(step, pageable, readOnly && allToOne);
+        }
+
+        return new FetchPlan(queryFactory, root.getType(), root.getMetadata().getName(), ordered,
+                properties.getBatchSize());
+    }
+
+    private FetchStrategy decide(FetchPlan.Step step, Pageable pageable, boolean projection) {
+        if (!step.collection) {
+            return projection ? FetchStrategy.DTO_PROJECTION : FetchStrategy.FETCH_JOIN;
+        }
+        if (pageable.isPaged()) {
+            return FetchStrategy.BATCH_LOAD;
+        }
+        return averageCardinality(step) <= properties.getMaxFetchJoinCardinality()
+                ? FetchStrategy.FETCH_JOIN
+                : FetchStrategy.BATCH_LOAD;
+    }
+
+    // 경로를 따라가며 메타모델로 ToOne/컬렉션 여부를 확인한다. 중간 경로도 함께 등록한다.
+    private void resolve(Class<?> rootType, String association, Map<String, FetchPlan.Step> steps) {
+        Metamodel metamodel = em.getMetamodel();
+        String[] segments = association.split("\\.");
+        Class<?> ownerType = rootType;
+        String parent = null;
+
+        for (int i = 0; i < segments.length; i++) {
+            String path = parent == null ? segments[i] : parent + "." + segments[i];
+            ManagedType<?> managedType = metamodel.managedType(ownerType);
+            Attribute<?, ?> attribute = managedType.getAttribute(segments[i]);
+
+            boolean collection = attribute.isCollection();
+            if (collection && i < segments.length - 1) {
+                throw new IllegalArgumentException("컬렉션 뒤의 연관관계는 지원하지 않습니다. association=" + association);
+            }
+            if (!attribute.isAssociation()) {
+                throw new IllegalArgumentException("연관관계가 아닙니다. association=" + association);
+            }
+            Class<?> type = collection
+                    ? ((PluralAttribute<?, ?, ?>) attribute).getElementType().getJavaType()
+                    : attribute.getJavaType();
+
+            steps.putIfAbsent(path, new FetchPlan.Step(path, parent, segments[i], ownerType, type, collection));
+            ownerType = type;
+            parent = path;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private double averageCardinality(FetchPlan.Step step) {
+        String key = step.ownerType.getName() + "." + step.attribute;
+        return cardinalities.get(key, k -> {
+            PathBuilder owner = new PathBuilder(step.ownerType, "cardinalityOwner");
+            Long owners = queryFactory
+                    .select(Wildcard.count)
+                    .from(owner)
+                    .fetchOne();
+            Long elements = queryFactory
+                    .select(Wildcard.count)
+                    .from(owner)
+                    .innerJoin((CollectionExpression) owner.getCollection(step.attribute, step.type),
+                            new PathBuilder(step.type, "cardinalityElement"))
+                    .fetchOne();
+            return owners == null || owners == 0 ? 0d : (double) elements / owners;
+        });
+    }
+}
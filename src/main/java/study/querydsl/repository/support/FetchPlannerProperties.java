@@ -0,0 +1,22 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * FetchPlanner 설정
+ */
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "querydsl.fetch-planner")
+public class FetchPlannerProperties {
+
+    // 페이징이 없을 때 컬렉션을 fetch join 해도 되는 부모당 평균 자식 수
+    private double maxFetchJoinCardinality = 10;
+    // BATCH_LOAD 의 IN 절 크기 (Oracle IN 목록 최대 1000)
+    private int batchSize = 1000;
+    // 컬렉션 평균 크기 추정치 캐시 시간
+    private long cardinalityTtlSeconds = 600;
+}
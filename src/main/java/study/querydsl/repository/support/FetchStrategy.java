@@ -0,0 +1,10 @@
+package study.querydsl.repository.support;
+
+public enum FetchStrategy {
+    // 본 쿼리에 fetch join
+    FETCH_JOIN,
+    // 본 쿼리 이후 id IN (...) 으로 한번에 초기화
+    BATCH_LOAD,
+    // 엔티티 대신 DTO 로 조회 (조인해서 컬럼만 가져온다)
+    DTO_PROJECTION
+}
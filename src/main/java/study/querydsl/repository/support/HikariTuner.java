@@ -0,0 +1,56 @@
+package study.querydsl.repository.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * HikariDataSource 를 풀이 시작되기 전에 DataSourceTuningProperties 대로 맞춘다.
+ * 메트릭(hikaricp.connections.acquire/active/idle/pending, 태그 pool=풀 이름)도 여기서 연결하므로
+ * 빈이 아닌 replica 풀도 같은 메트릭이 나온다.
+ */
+@Slf4j
+@Component
+public class HikariTuner {
+
+    private static final String ORACLE_URL = "jdbc:oracle:";
+    private static final String IMPLICIT_STATEMENT_CACHE_SIZE = "oracle.jdbc.implicitStatementCacheSize";
+    private static final String DEFAULT_ROW_PREFETCH = "defaultRowPrefetch";
+
+    private final DataSourceTuningProperties properties;
+    private final MeterRegistry registry;
+
+    public HikariTuner(DataSourceTuningProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+    }
+
+    public void tune(HikariDataSource dataSource) {
+        if (dataSource.getMetricRegistry() == null && dataSource.getMetricsTrackerFactory() == null) {
+            dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        }
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        int poolSize = poolSize();
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setMinimumIdle(poolSize);
+        dataSource.setConnectionTimeout(properties.getConnectionTimeoutMillis());
+
+        // 다른 드라이버(H2 등)는 모르는 속성이 있으면 커넥션을 만들지 못한다.
+        String url = dataSource.getJdbcUrl();
+        if (url != null && url.startsWith(ORACLE_URL)) {
+            dataSource.addDataSourceProperty(IMPLICIT_STATEMENT_CACHE_SIZE, properties.getImplicitStatementCacheSize());
+            dataSource.addDataSourceProperty(DEFAULT_ROW_PREFETCH, properties.getDefaultRowPrefetch());
+        }
+        log.info("tuned pool {}: size={}, url={}", dataSource.getPoolName(), poolSize, url);
+    }
+
+    public int poolSize() {
+        return Runtime.getRuntime().availableProcessors() * properties.getPoolSizePerCore()
+                + properties.getEffectiveSpindleCount();
+    }
+}
@@ -0,0 +1,8 @@
+package study.querydsl.repository.support;
+
+public class NPlusOneDetectedException extends RuntimeException {
+
+    public NPlusOneDetectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,150 @@
+package study.querydsl.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hibernate StatementInspector 로 실행되는 select 를 모양(SQL 문자열) 별로 센다.
+ * 범위는 요청(NPlusOneFilter) 이고, 요청 밖에서는 현재 트랜잭션이 끝날 때까지다.
+ * 요청에서 다른 스레드로 넘긴 작업은 propagate() 로 같은 이름의 범위를 이어간다.
+ * 같은 모양이 반복되면 그 직전에 실행된 리포지토리 메서드와 함께 보고한다.
+ */
+@Slf4j
+@Component
+public class NPlusOneDetector implements StatementInspector {
+
+    private final NPlusOneProperties properties;
+    // EntityManagerFactory 생성 시점에 필요한 빈이라 메트릭 쪽은 늦게 가져온다.
+    private final ObjectProvider<QueryMetrics> queryMetrics;
+    private final ThreadLocal<Scope> currentScope = new ThreadLocal<>();
+
+    public NPlusOneDetector(NPlusOneProperties properties, ObjectProvider<QueryMetrics> queryMetrics) {
+        this.properties = properties;
+        this.queryMetrics = queryMetrics;
+    }
+
+    public void begin(String name) {
+        if (properties.isEnabled() && currentScope.get() == null) {
+            currentScope.set(new Scope(name));
+        }
+    }
+
+    public void end() {
+        Scope scope = currentScope.get();
+        currentScope.remove();
+        if (scope != null) {
+            scope.report(properties.getThreshold());
+        }
+    }
+
+    /*
+     다른 스레드(bulkhead 등)에서 실행할 task 를 현재 범위와 같은 이름의 범위로 묶는다.
+     제출하는 스레드에 범위가 없으면 task 를 그대로 반환한다.
+     */
+    public Runnable propagate(Runnable task) {
+        Scope scope = currentScope.get();
+        if (scope == null) {
+            return task;
+        }
+        String name = scope.name;
+        return () -> {
+            begin(name);
+            try {
+                task.run();
+            } finally {
+                end();
+            }
+        };
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (!properties.isEnabled() || !isSelect(sql)) {
+            return sql;
+        }
+
+        Scope scope = currentScope.get();
+        if (scope == null) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                return sql;
+            }
+            scope = new Scope(TransactionSynchronizationManager.getCurrentTransactionName());
+            currentScope.set(scope);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    end();
+                }
+            });
+        }
+
+        Shape shape = scope.record(sql, queryMetrics.getObject().currentQuery());
+        if (properties.isStrict() && shape.count > properties.getThreshold()) {
+            throw new NPlusOneDetectedException(shape.describe(scope.name));
+        }
+        return sql;
+    }
+
+    private boolean isSelect(String sql) {
+        String statement = sql.trim();
+        // use_sql_comments 로 붙은 /* JPQL */ 주석은 건너뛴다.
+        if (statement.startsWith("/*")) {
+            int end = statement.indexOf("*/");
+            statement = end < 0 ? "" : statement.substring(end + 2).trim();
+        }
+        return statement.regionMatches(true, 0, "select", 0, 6);
+    }
+
+    private static class Scope {
+        private final String name;
+        private final Map<String, Shape> shapes = new HashMap<>();
+        private String lastQuery;
+
+        Scope(String name) {
+            this.name = name;
+        }
+
+        Shape record(String sql, String query) {
+            // 리포지토리 밖(지연 로딩 등)에서 나간 쿼리는 마지막으로 실행된 리포지토리 메서드로 본다.
+            if (!"unknown".equals(query)) {
+                lastQuery = query;
+            }
+            Shape shape = shapes.computeIfAbsent(sql, Shape::new);
+            shape.count++;
+            if (shape.trigger == null) {
+                shape.trigger = lastQuery;
+            }
+            return shape;
+        }
+
+        void report(int threshold) {
+            for (Shape shape : shapes.values()) {
+                if (shape.count >= threshold) {
+                    log.warn(shape.describe(name));
+                }
+            }
+        }
+    }
+
+    private static class Shape {
+        private final String sql;
+        private int count;
+        private String trigger;
+
+        Shape(String sql) {
+            this.sql = sql;
+        }
+
+        String describe(String scopeName) {
+            return "N+1 의심: 같은 select 가 " + count + "번 실행되었습니다. scope=" + scopeName
+                    + ", trigger=" + trigger + ", sql=" + sql;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * N+1 감지 설정
+ * 한 요청(또는 트랜잭션) 안에서 같은 모양의 select 가 threshold 번 이상 나가면 보고한다.
+ * strict 이면 threshold 를 넘는 순간 예외를 던진다. (테스트용)
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.n-plus-one")
+public class NPlusOneProperties {
+
+    private boolean enabled = true;
+    private int threshold = 5;
+    private boolean strict = false;
+}
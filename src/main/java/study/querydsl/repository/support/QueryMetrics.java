@@ -0,0 +1,124 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.RowCounted;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 리포지토리 메서드(논리적 쿼리) 단위 메트릭
+ * - querydsl.query : 실행 시간 (timer, histogram)
+ * - querydsl.query.rows : 반환 row 수
+ * - querydsl.count : 페이징 count 쿼리 실행/생략 횟수 (result=executed|skipped)
+ * 모든 메트릭은 query=클래스명.메서드명 으로 태그된다.
+ * withoutMetrics 안의 호출(워밍업 등 실제 트래픽이 아닌 호출)은 기록하지 않는다.
+ */
+@Component
+public class QueryMetrics {
+
+    public static final String QUERY = "querydsl.query";
+    public static final String ROWS = "querydsl.query.rows";
+    public static final String COUNT = "querydsl.count";
+
+    private static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry registry;
+    private final ThreadLocal<Deque<String>> currentQuery = ThreadLocal.withInitial(ArrayDeque::new);
+    private final ThreadLocal<Boolean> suppressed = new ThreadLocal<>();
+
+    public QueryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Timer.Sample start(String query) {
+        currentQuery.get().push(query);
+        return Timer.start(registry);
+    }
+
+    public void stop(Timer.Sample sample, String query, Object result, Throwable error) {
+        Deque<String> stack = currentQuery.get();
+        stack.poll();
+        if (stack.isEmpty()) {
+            currentQuery.remove();
+        }
+
+        sample.stop(Timer.builder(QUERY)
+                .tag("query", query)
+                .tag("exception", error == null ? "none" : error.getClass().getSimpleName())
+                .register(registry));
+
+        long rows = rows(result);
+        if (rows >= 0) {
+            DistributionSummary.builder(ROWS)
+                    .tag("query", query)
+                    .register(registry)
+                    .record(rows);
+        }
+    }
+
+    public <T> T withoutMetrics(Supplier<T> work) {
+        boolean outer = suppressed.get() == null;
+        suppressed.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (outer) {
+                suppressed.remove();
+            }
+        }
+    }
+
+    public boolean isSuppressed() {
+        return suppressed.get() != null;
+    }
+
+    public String currentQuery() {
+        String query = currentQuery.get().peek();
+        return query != null ? query : UNKNOWN;
+    }
+
+    /**
+     * PageableExecutionUtils.getPage 와 동일하고, count 쿼리를 실행했는지 생략했는지를 기록한다.
+     */
+    public <T> Page<T> getPage(List<T> content, Pageable pageable, LongSupplier totalSupplier) {
+        boolean[] executed = {false};
+        Page<T> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+            executed[0] = true;
+            return totalSupplier.getAsLong();
+        });
+        if (!isSuppressed()) {
+            registry.counter(COUNT,
+                    "query", currentQuery(),
+                    "result", executed[0] ? "executed" : "skipped").increment();
+        }
+        return page;
+    }
+
+    private long rows(Object result) {
+        if (result instanceof Page) {
+            return ((Page<?>) result).getNumberOfElements();
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result instanceof RowCounted) {
+            return ((RowCounted) result).getRowCount();
+        }
+        return -1;
+    }
+}
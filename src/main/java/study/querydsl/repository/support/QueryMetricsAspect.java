@@ -0,0 +1,47 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+/**
+ * repository 패키지의 *Repository* 클래스 public 메서드를 논리적 쿼리 하나로 보고 메트릭을 남긴다.
+ * (Spring Data 인터페이스 프록시는 대상이 아니고, 실제 구현 클래스 기준으로 태그된다.)
+ */
+@Aspect
+@Component
+public class QueryMetricsAspect {
+
+    private final QueryMetrics queryMetrics;
+
+    public QueryMetricsAspect(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+
+    @Around("within(study.querydsl.repository..*Repository*) " +
+            "&& !within(study.querydsl.repository.support..*) " +
+            "&& execution(public * *(..))")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (queryMetrics.isSuppressed()) {
+            return joinPoint.proceed();
+        }
+        String query = ClassUtils.getUserClass(joinPoint.getTarget()).getSimpleName()
+                + "." + joinPoint.getSignature().getName();
+
+        Timer.Sample sample = queryMetrics.start(query);
+        Object result = null;
+        Throwable error = null;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } catch (Throwable e) {
+            error = e;
+            throw e;
+        } finally {
+            queryMetrics.stop(sample, query, result, error);
+        }
+    }
+}
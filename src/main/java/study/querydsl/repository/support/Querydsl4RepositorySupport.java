@@ -2,10 +2,15 @@ package study.querydsl.repository.support;
 
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
@@ -13,12 +18,18 @@ import
         org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 import org.springframework.data.jpa.repository.support.Querydsl;
 import org.springframework.data.querydsl.SimpleEntityPathResolver;
-import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 /**
  * Querydsl 4.x 버전에 맞춘 Querydsl 지원 라이브러리
@@ -33,6 +44,11 @@ public abstract class Querydsl4RepositorySupport {
     private Querydsl querydsl;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private EntityManagerFactory entityManagerFactory;
+    private AsyncTaskExecutor countQueryExecutor;
+    private long countQueryTimeoutMillis;
+    private QueryMetrics queryMetrics;
+    private FetchPlanner fetchPlanner;
     public Querydsl4RepositorySupport(Class<?> domainClass) {
         Assert.notNull(domainClass, "Domain class must not be null!");
         this.domainClass = domainClass;
@@ -49,11 +65,28 @@ public abstract class Querydsl4RepositorySupport {
                 PathBuilder<>(path.getType(), path.getMetadata()));
         this.queryFactory = new JPAQueryFactory(entityManager);
     }
+    @Autowired
+    public void setCountQueryExecution(EntityManagerFactory entityManagerFactory,
+                                       @Qualifier("countQueryExecutor") AsyncTaskExecutor countQueryExecutor,
+                                       CountQueryProperties countQueryProperties) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.countQueryExecutor = countQueryExecutor;
+        this.countQueryTimeoutMillis = countQueryProperties.getTimeoutMillis();
+    }
+    @Autowired
+    public void setQueryMetrics(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+    @Autowired
+    public void setFetchPlanner(FetchPlanner fetchPlanner) {
+        this.fetchPlanner = fetchPlanner;
+    }
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null!");
         Assert.notNull(querydsl, "Querydsl must not be null!");
         Assert.notNull(queryFactory, "QueryFactory must not be null!");
+        Assert.notNull(queryMetrics, "QueryMetrics must not be null!");
     }
     protected JPAQueryFactory getQueryFactory() {
         return queryFactory;
@@ -70,12 +103,18 @@ public abstract class Querydsl4RepositorySupport {
     protected <T> JPAQuery<T> selectFrom(EntityPath<T> from) {
         return getQueryFactory().selectFrom(from);
     }
+    protected QueryMetrics getQueryMetrics() {
+        return queryMetrics;
+    }
+    protected FetchPlanner getFetchPlanner() {
+        return fetchPlanner;
+    }
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery) {
         JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
         List<T> content = getQuerydsl().applyPagination(pageable,
                 jpaQuery).fetch();
-        return PageableExecutionUtils.getPage(content, pageable,
+        return queryMetrics.getPage(content, pageable,
                 jpaQuery::fetchCount);
     }
     protected <T> Page<T> applyPagination(Pageable pageable,
@@ -85,7 +124,113 @@ public abstract class Querydsl4RepositorySupport {
         List<T> content = getQuerydsl().applyPagination(pageable,
                 jpaContentQuery).fetch();
         JPAQuery countResult = countQuery.apply(getQueryFactory());
-        return PageableExecutionUtils.getPage(content, pageable,
+        return queryMetrics.getPage(content, pageable,
                 countResult::fetchCount);
     }
+    /**
+     * FetchPlan 의 fetch join 을 content 쿼리에 붙이고, 페이지 조회 후 배치 로딩 대상을 IN 절로 초기화한다.
+     * count 쿼리에는 fetch join 을 붙이지 않는다.
+     */
+    protected <T> Page<T> applyPagination(Pageable pageable, FetchPlan fetchPlan,
+                                          Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
+            JPAQuery> countQuery) {
+        JPAQuery jpaContentQuery = fetchPlan.applyFetchJoins(contentQuery.apply(getQueryFactory()));
+        List<T> content = getQuerydsl().applyPagination(pageable,
+                jpaContentQuery).fetch();
+        fetchPlan.loadBatches(content);
+        JPAQuery countResult = countQuery.apply(getQueryFactory());
+        return queryMetrics.getPage(content, pageable,
+                countResult::fetchCount);
+    }
+    /**
+     * deferred join(ID 먼저) 페이징
+     * 1. idQuery 에 정렬(pageable 정렬 + id)/offset/limit 을 적용해서 id 만 고른다. (인덱스만 읽고 정렬, 넓은 row 를 스킵하지 않는다)
+     * 2. contentQuery 로 그 id 들의 row 만 조인해서 읽고 1단계 순서대로 돌려준다.
+     * projection 이 넓고 페이지가 깊을수록 효과가 크다.
+     */
+    protected <T, ID extends Comparable> Page<T> applyDeferredPagination(Pageable pageable,
+                                                      ComparableExpressionBase<ID> id,
+                                                      Function<JPAQueryFactory, JPAQuery<ID>> idQuery,
+                                                      BiFunction<JPAQueryFactory, List<ID>, JPAQuery<T>> contentQuery,
+                                                      Function<T, ID> idOf,
+                                                      Function<JPAQueryFactory, JPAQuery> countQuery) {
+        // 정렬 컬럼 값이 같은 row 가 페이지 경계에서 겹치거나 빠지지 않도록 id 를 마지막 정렬 기준으로 붙인다.
+        List<ID> ids = getQuerydsl().applyPagination(pageable,
+                idQuery.apply(getQueryFactory()))
+                .orderBy(id.asc())
+                .fetch();
+        List<T> content = DeferredJoin.fetch(ids,
+                chunk -> contentQuery.apply(getQueryFactory(), chunk).fetch(), idOf);
+        JPAQuery countResult = countQuery.apply(getQueryFactory());
+        return queryMetrics.getPage(content, pageable,
+                countResult::fetchCount);
+    }
+    /**
+     * content 쿼리와 count 쿼리를 동시에 실행한다.
+     * count 는 별도 EntityManager(별도 커넥션)로 countQueryExecutor 에서 실행되고,
+     * PageableExecutionUtils 가 count 가 필요 없다고 판단하면 결과를 기다리지 않고 취소한다.
+     * - 아직 시작하지 않은 count 는 실행되지 않는다.
+     * - 실행 중인 count 는 스레드를 interrupt 하지만 JDBC 드라이버가 interrupt 에 반응한다는 보장은 없으므로
+     *   count 쿼리에 query timeout(timeoutMillis) 을 걸어서 커넥션을 잡고 있는 시간을 제한한다.
+     * count 는 호출한 쪽의 트랜잭션 밖에서 실행되므로 커밋되지 않은 변경은 보이지 않고,
+     * content 와 count 사이에 커밋된 변경 때문에 total 이 content 와 맞지 않을 수 있다.
+     * executor 가 가득 차 있으면 기존처럼 현재 스레드(호출한 쪽 트랜잭션)에서 count 를 실행한다.
+     */
+    protected <T> Page<T> applyPaginationAsync(Pageable pageable,
+                                               Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
+            JPAQuery> countQuery) {
+        Future<Long> countFuture = submitCount(pageable, countQuery);
+        try {
+            JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
+            List<T> content = getQuerydsl().applyPagination(pageable,
+                    jpaContentQuery).fetch();
+            return queryMetrics.getPage(content, pageable,
+                    () -> countFuture != null
+                            ? awaitCount(countFuture)
+                            : countQuery.apply(getQueryFactory()).fetchCount());
+        } finally {
+            if (countFuture != null) {
+                countFuture.cancel(true);
+            }
+        }
+    }
+    // supplyAsync 의 CompletableFuture 는 cancel(true) 해도 interrupt 하지 않으므로 submit(FutureTask) 을 사용한다.
+    private Future<Long> submitCount(Pageable pageable,
+                                     Function<JPAQueryFactory, JPAQuery> countQuery) {
+        if (pageable.isUnpaged()) {
+            return null;
+        }
+        try {
+            return countQueryExecutor.submit(() -> {
+                EntityManager countEntityManager = entityManagerFactory.createEntityManager();
+                try {
+                    return (Long) countQuery.apply(new JPAQueryFactory(countEntityManager))
+                            .setHint(QueryHints.TIMEOUT_HIBERNATE, countQueryTimeoutSeconds())
+                            .fetchCount();
+                } finally {
+                    countEntityManager.close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+    private int countQueryTimeoutSeconds() {
+        return (int) Math.max(1, (countQueryTimeoutMillis + 999) / 1000);
+    }
+    private long awaitCount(Future<Long> countFuture) {
+        try {
+            return countFuture.get(countQueryTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("count query timed out after " + countQueryTimeoutMillis + "ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for count query", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
 }
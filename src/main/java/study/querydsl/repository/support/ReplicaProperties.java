@@ -0,0 +1,32 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 읽기 전용 replica 설정
+ * enabled 이면 @Transactional(readOnly = true) 의 커넥션을 nodes 중 하나에서 얻는다.
+ * unhealthy 로 표시된 replica 는 healthCheckIntervalMillis 마다 다시 확인한다.
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.replica")
+public class ReplicaProperties {
+
+    private boolean enabled = false;
+    private long healthCheckIntervalMillis = 5000;
+    private int validationTimeoutSeconds = 1;
+    private List<Node> nodes = new ArrayList<>();
+
+    @Getter @Setter
+    public static class Node {
+
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+    }
+}
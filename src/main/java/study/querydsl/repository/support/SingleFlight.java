@@ -0,0 +1,53 @@
+package study.querydsl.repository.support;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 같은 키로 동시에 들어온 호출을 하나만 실행하고 나머지는 그 결과를 같이 받는다.
+ * 진행 중인 호출은 ConcurrentHashMap 에 두므로 키가 다르면 서로 다른 bin 의 락만 잡는다. (lock striping)
+ * 실행이 끝나면 바로 제거되므로 결과를 캐시하지는 않는다.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    public interface Call<V> {
+        V call() throws Throwable;
+    }
+
+    public interface Listener {
+        void executed(boolean shared);
+    }
+
+    public V execute(K key, Call<V> call, Listener listener) throws Throwable {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            listener.executed(true);
+            return await(existing);
+        }
+
+        listener.executed(false);
+        try {
+            V result = call.call();
+            mine.complete(result);
+            return result;
+        } catch (Throwable e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private V await(CompletableFuture<V> future) throws Throwable {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MemberRepositoryImpl 의 search* 호출 중 정규화된 조건과 나머지 인자(Pageable, 커서 ...)가 같은 동시 호출을 하나로 합친다.
+ * 트랜잭션보다 바깥에서 동작하므로 합쳐진 호출은 트랜잭션/커넥션도 하나만 사용한다.
+ * 호출하는 쪽에 이미 트랜잭션이 있으면(아직 커밋되지 않은 변경이 보일 수 있으므로) 합치지 않는다.
+ * QueryMetrics.withoutMetrics 안의 호출(워밍업)도 합치지 않고 기록하지 않는다.
+ * - querydsl.single-flight (query, result=executed|shared) : 실제 실행/결과 공유 횟수
+ * - querydsl.single-flight.dedup.ratio : 전체 호출 중 결과를 공유받은 비율
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "querydsl.single-flight", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SingleFlightAspect {
+
+    public static final String SINGLE_FLIGHT = "querydsl.single-flight";
+    public static final String DEDUP_RATIO = "querydsl.single-flight.dedup.ratio";
+
+    private final SingleFlight<List<Object>, Object> singleFlight = new SingleFlight<>();
+    private final MeterRegistry registry;
+    private final QueryMetrics queryMetrics;
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    public SingleFlightAspect(MeterRegistry registry, QueryMetrics queryMetrics) {
+        this.registry = registry;
+        this.queryMetrics = queryMetrics;
+        Gauge.builder(DEDUP_RATIO, this, SingleFlightAspect::dedupRatio)
+                .register(registry);
+    }
+
+    @Around("within(study.querydsl.repository.MemberRepositoryImpl) && execution(public * search*(..))")
+    public Object coalesce(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive() || queryMetrics.isSuppressed()) {
+            return joinPoint.proceed();
+        }
+
+        String query = joinPoint.getSignature().getName();
+        return singleFlight.execute(keyOf(query, joinPoint.getArgs()), joinPoint::proceed, isShared -> {
+            (isShared ? shared : executed).increment();
+            registry.counter(SINGLE_FLIGHT, "query", query, "result", isShared ? "shared" : "executed").increment();
+        });
+    }
+
+    private List<Object> keyOf(String query, Object[] args) {
+        List<Object> key = new ArrayList<>(args.length + 1);
+        key.add(query);
+        for (Object arg : args) {
+            key.add(arg instanceof MemberSearchCondition ? ((MemberSearchCondition) arg).normalize() : arg);
+        }
+        return key;
+    }
+
+    private double dedupRatio() {
+        double sharedCount = shared.sum();
+        double total = executed.sum() + sharedCount;
+        return total == 0 ? 0 : sharedCount / total;
+    }
+}
@@ -0,0 +1,17 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 팀별 회원 통계 저장소 설정
+ * 엔티티 이벤트로 놓치는 변경(벌크 쿼리, 다른 인스턴스의 변경)은 reconcileIntervalMillis 마다 DB 와 맞춘다.
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.team-stats")
+public class TeamStatsProperties {
+
+    private boolean enabled = true;
+    private long reconcileIntervalMillis = 60_000;
+}
@@ -0,0 +1,125 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Path;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * "값 vs 그룹 집계" 조회를 상관 서브쿼리(select avg(...) from member memberSub) 대신
+ * 분석 함수(집계 over (partition by ...)) 로 테이블을 한번만 읽어서 실행한다.
+ * JPQL(Hibernate 5) 은 OVER() 를 표현할 수 없으므로 Querydsl 경로를 Hibernate 매핑 정보로 컬럼에 대응시켜 네이티브 SQL 로 실행한다.
+ * 경로는 엔티티 바로 아래 속성(member.age, member.team ...) 만 사용할 수 있고, 연관관계는 FK 컬럼이 된다.
+ */
+@Component
+public class WindowAggregates {
+
+    public enum Aggregate {
+        AVG, MAX, MIN, SUM, COUNT
+    }
+
+    public enum Comparison {
+        EQ("="), NE("<>"), GT(">"), GOE(">="), LT("<"), LOE("<=");
+
+        private final String operator;
+
+        Comparison(String operator) {
+            this.operator = operator;
+        }
+    }
+
+    private static final String AGGREGATE_COLUMN = "agg_value";
+
+    private final EntityManager em;
+    private final SessionFactoryImplementor sessionFactory;
+
+    public WindowAggregates(EntityManager em, EntityManagerFactory emf) {
+        this.em = em;
+        this.sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+    }
+
+    /**
+     * columns 와 함께 partitionBy(null 이면 전체) 별 aggregate(value) 를 마지막 컬럼으로 반환한다.
+     * ex) select username, (select avg(age) from member) from member
+     */
+    public List<Object[]> withAggregate(Aggregate aggregate, Path<? extends Number> value, Path<?> partitionBy,
+                                        Path<?>... columns) {
+        String sql = "select " + columns(columns) + ", " + over(aggregate, value, partitionBy)
+                + " from " + table(value);
+        return rows(sql, value);
+    }
+
+    /**
+     * value 가 partitionBy(null 이면 전체) 별 aggregate(value) 와 comparison 을 만족하는 row 의 columns 를 반환한다.
+     * ex) select id from member where age >= (select avg(age) from member)
+     */
+    public List<Object[]> compareWithAggregate(Comparison comparison, Aggregate aggregate, Path<? extends Number> value,
+                                               Path<?> partitionBy, Path<?>... columns) {
+        String valueColumn = column(value);
+        String sql = "select " + columns(columns)
+                + " from (select " + columns(columns) + ", " + valueColumn + " as " + valueAlias(value)
+                + ", " + over(aggregate, value, partitionBy)
+                + " from " + table(value) + ") w"
+                + " where " + valueAlias(value) + " " + comparison.operator + " " + AGGREGATE_COLUMN;
+        return rows(sql, value);
+    }
+
+    private String over(Aggregate aggregate, Path<? extends Number> value, Path<?> partitionBy) {
+        String partition = partitionBy != null ? "partition by " + column(partitionBy) : "";
+        return aggregate.name().toLowerCase(Locale.ROOT) + "(" + column(value) + ") over (" + partition + ") as " + AGGREGATE_COLUMN;
+    }
+
+    private String columns(Path<?>[] columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("조회할 컬럼이 없습니다.");
+        }
+        return Stream.of(columns).map(this::column).collect(Collectors.joining(", "));
+    }
+
+    // 서브쿼리에서 비교용 value 가 조회 컬럼과 겹치지 않도록 별칭을 붙인다.
+    private String valueAlias(Path<?> value) {
+        return "cmp_" + value.getMetadata().getName();
+    }
+
+    private String table(Path<?> path) {
+        return persister(path).getTableName();
+    }
+
+    private String column(Path<?> path) {
+        if (path.getMetadata().getParent() != path.getRoot()) {
+            throw new IllegalArgumentException("엔티티 바로 아래 속성만 사용할 수 있습니다. path=" + path);
+        }
+        AbstractEntityPersister persister = persister(path);
+        String property = path.getMetadata().getName();
+        if (property.equals(persister.getIdentifierPropertyName())) {
+            return persister.getIdentifierColumnNames()[0];
+        }
+        return persister.getPropertyColumnNames(property)[0];
+    }
+
+    private AbstractEntityPersister persister(Path<?> path) {
+        return (AbstractEntityPersister) sessionFactory.getMetamodel().entityPersister(path.getRoot().getType());
+    }
+
+    // 엔티티 테이블을 동기화 대상으로 지정해서 auto flush 가 해당 엔티티의 변경만 먼저 반영하도록 한다.
+    private List<Object[]> rows(String sql, Path<?> path) {
+        List<?> result = em.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(path.getRoot().getType())
+                .getResultList();
+        List<Object[]> rows = new ArrayList<>(result.size());
+        for (Object row : result) {
+            rows.add(row instanceof Object[] ? (Object[]) row : new Object[]{row});
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,7 @@
+-- ddl-auto(create) 로 스키마를 만든 뒤 hibernate.hbm2ddl.import_files 로 실행된다. (Oracle, 한 줄에 한 문장)
+-- UsernameMatch.EXACT/PREFIX : username = ? / username >= ? and username < ? -> B-tree range scan
+create index member_username_idx on member (username)
+-- UsernameMatch.IGNORE_CASE/PREFIX_IGNORE_CASE : lower(username) 조건 -> 함수 기반 인덱스
+create index member_username_lower_idx on member (lower(username))
+-- MemberTeamDto 조회(MemberSearchPlanCache.searchRows) : teamName/age 조건을 인덱스에서 거르고 member 테이블은 읽지 않는 커버링 인덱스
+create index member_team_age_username_idx on member (team_id, age, username, member_id)
@@ -26,6 +26,9 @@ import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberQueryRepository;
+import study.querydsl.repository.support.WindowAggregates.Aggregate;
+import study.querydsl.repository.support.WindowAggregates.Comparison;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -35,6 +38,8 @@ import java.util.List;
 
 import static com.querydsl.jpa.JPAExpressions.select;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.assertj.core.api.InstanceOfAssertFactories.PATH;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.*;
@@ -46,6 +51,9 @@ public class QuerydslBasicTest {
     @Autowired
     EntityManager em;
 
+    @Autowired
+    MemberQueryRepository memberQueryRepository;
+
     JPAQueryFactory jpaQueryFactory;
 
     @BeforeEach
@@ -457,6 +465,36 @@ public class QuerydslBasicTest {
     }
 
 
+    /*
+     * subQuery, subQueryGoe, selectSubquery 를 분석 함수 한번으로
+     */
+    @Test
+    public void windowAggregate(){
+        assertThat(memberQueryRepository.findByAgeComparedWith(Comparison.EQ, Aggregate.MAX, false))
+                .extracting("age")
+                .containsExactly(40);
+        assertThat(memberQueryRepository.findByAgeComparedWith(Comparison.GOE, Aggregate.AVG, false))
+                .extracting("age")
+                .containsExactly(30, 40);
+        // 팀별 최대 나이
+        assertThat(memberQueryRepository.findByAgeComparedWith(Comparison.EQ, Aggregate.MAX, true))
+                .extracting("age")
+                .containsExactly(20, 40);
+
+        assertThat(memberQueryRepository.findUsernameWithAge(Aggregate.MIN, false))
+                .extracting("age")
+                .containsOnly(10);
+        assertThatThrownBy(() -> memberQueryRepository.findUsernameWithAge(Aggregate.AVG, false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(memberQueryRepository.findUsernameWithAge(Aggregate.MAX, true))
+                .extracting("name", "age")
+                .containsExactlyInAnyOrder(
+                        tuple("member1", 20),
+                        tuple("member2", 20),
+                        tuple("member3", 40),
+                        tuple("member4", 40));
+    }
+
     @Test
     public void basicCase(){
         List<String> fetch = jpaQueryFactory
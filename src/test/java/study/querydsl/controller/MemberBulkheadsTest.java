@@ -0,0 +1,85 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import study.querydsl.repository.support.NPlusOneDetectedException;
+import study.querydsl.repository.support.NPlusOneDetector;
+import study.querydsl.repository.support.NPlusOneProperties;
+import study.querydsl.repository.support.QueryMetrics;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MemberBulkheadsTest {
+
+    @Test
+    public void rejectWhenFull() throws Exception {
+        MemberBulkheadProperties properties = new MemberBulkheadProperties();
+        properties.setV1(new MemberBulkheadProperties.Pool(1, 0));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MemberBulkheads bulkheads = new MemberBulkheads(properties, registry, detector(new NPlusOneProperties()));
+
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            ThreadPoolTaskExecutor v1 = bulkheads.get(MemberBulkheads.V1);
+            v1.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            // v1 이 가득 차도 다른 엔드포인트는 영향을 받지 않는다.
+            assertThatThrownBy(() -> v1.execute(() -> { }))
+                    .isInstanceOf(TaskRejectedException.class);
+            bulkheads.get(MemberBulkheads.V2).submit(() -> { }).get();
+
+            assertThat(registry.counter(MemberBulkheads.REJECTED, "bulkhead", MemberBulkheads.V1).count())
+                    .isEqualTo(1);
+        } finally {
+            release.countDown();
+            bulkheads.destroy();
+        }
+    }
+
+    @Test
+    public void propagateNPlusOneScope() throws Exception {
+        NPlusOneProperties nPlusOne = new NPlusOneProperties();
+        nPlusOne.setStrict(true);
+        nPlusOne.setThreshold(1);
+        NPlusOneDetector detector = detector(nPlusOne);
+        MemberBulkheads bulkheads = new MemberBulkheads(new MemberBulkheadProperties(), new SimpleMeterRegistry(),
+                detector);
+
+        // 요청 스레드(NPlusOneFilter)의 범위가 bulkhead 스레드로 이어진다.
+        detector.begin("GET /v3/members/async");
+        try {
+            assertThatThrownBy(() -> bulkheads.get(MemberBulkheads.V3).submit(() -> {
+                detector.inspect("select * from team where team_id=?");
+                detector.inspect("select * from team where team_id=?");
+            }).get())
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(NPlusOneDetectedException.class)
+                    .hasMessageContaining("scope=GET /v3/members/async");
+        } finally {
+            detector.end();
+            bulkheads.destroy();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private NPlusOneDetector detector(NPlusOneProperties properties) {
+        ObjectProvider<QueryMetrics> queryMetrics = mock(ObjectProvider.class);
+        when(queryMetrics.getObject()).thenReturn(new QueryMetrics(new SimpleMeterRegistry()));
+        return new NPlusOneDetector(properties, queryMetrics);
+    }
+}
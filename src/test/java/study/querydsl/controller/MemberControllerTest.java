@@ -0,0 +1,106 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+ export 는 bulkhead 스레드의 별도 트랜잭션에서 읽으므로 데이터를 직접 커밋하고 마지막에 지운다.
+ */
+@SpringBootTest(properties = {"querydsl.export.flush-interval=2", "querydsl.bulk.max-request-size=3"})
+@AutoConfigureMockMvc
+class MemberControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void exportNdjson() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long teamId = tx.execute(status -> {
+            Team team = new Team("exportTeam");
+            em.persist(team);
+            for (int i = 0; i < 5; i++) {
+                em.persist(new Member("export" + i, 20 + i, team));
+            }
+            return team.getId();
+        });
+
+        try {
+            MvcResult started = mockMvc.perform(get("/v1/members/export").param("teamName", "exportTeam"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            started.getAsyncResult();
+
+            String body = mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+
+            // flush-interval(2) 보다 많은 5건이 한 줄에 한 건씩 나온다.
+            String[] lines = body.trim().split("\n");
+            assertThat(lines).hasSize(5);
+            assertThat(lines).allSatisfy(line -> assertThat(line)
+                    .startsWith("{")
+                    .contains("\"teamName\":\"exportTeam\""));
+        } finally {
+            tx.execute(status -> {
+                em.createQuery("delete from Member m where m.team.id = :teamId")
+                        .setParameter("teamId", teamId)
+                        .executeUpdate();
+                em.remove(em.find(Team.class, teamId));
+                return null;
+            });
+        }
+    }
+
+    @Test
+    public void bulkSaveTooLarge() throws Exception {
+        String members = "[" +
+                "{\"username\":\"bulk1\",\"age\":10}," +
+                "{\"username\":\"bulk2\",\"age\":20}," +
+                "{\"username\":\"bulk3\",\"age\":30}," +
+                "{\"username\":\"bulk4\",\"age\":40}]";
+
+        mockMvc.perform(post("/v1/members/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(members))
+                .andExpect(status().isPayloadTooLarge());
+
+        Long saved = em.createQuery("select count(m) from Member m where m.username like 'bulk%'", Long.class)
+                .getSingleResult();
+        assertThat(saved).isZero();
+    }
+
+    @Test
+    public void badCursor() throws Exception {
+        mockMvc.perform(get("/v4/members").param("after", "abc"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v4/members").param("after", "20_x").param("orderBy", "age"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,75 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberCountCache;
+import study.querydsl.repository.MemberDataVersion;
+import study.querydsl.repository.support.CountCacheProperties;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberResponseCacheTest {
+
+    private final MemberDataVersion dataVersion = new MemberDataVersion(new MemberCountCache(new CountCacheProperties()));
+    private final MemberResponseCache responseCache =
+            new MemberResponseCache(dataVersion, new ObjectMapper(), new MemberResponseCacheProperties());
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @Test
+    public void notModifiedWithoutSearch() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        ResponseEntity<byte[]> first = get(condition, null);
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(searches.get()).isEqualTo(1);
+
+        // 같은 ETag 면 조회하지 않고 304
+        ResponseEntity<byte[]> notModified = get(condition, first.getHeaders().getETag());
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        // 빈 문자열 조건은 정규화되어 같은 응답 캐시를 사용한다.
+        MemberSearchCondition blankUsername = new MemberSearchCondition();
+        blankUsername.setTeamName("teamA");
+        blankUsername.setUsername(" ");
+        ResponseEntity<byte[]> cached = get(blankUsername, null);
+        assertThat(cached.getHeaders().getETag()).isEqualTo(first.getHeaders().getETag());
+        assertThat(cached.getBody()).isEqualTo(first.getBody());
+        assertThat(searches.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void changedDataVersion() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        ResponseEntity<byte[]> first = get(condition, null);
+        dataVersion.changed();
+        ResponseEntity<byte[]> second = get(condition, first.getHeaders().getETag());
+
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(second.getHeaders().getETag()).isNotEqualTo(first.getHeaders().getETag());
+        assertThat(searches.get()).isEqualTo(2);
+    }
+
+    private ResponseEntity<byte[]> get(MemberSearchCondition condition, String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/v2/members");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        ServletWebRequest webRequest = new ServletWebRequest(request, new MockHttpServletResponse());
+        return responseCache.get("v2", condition, PageRequest.of(0, 10), webRequest, () -> {
+            searches.incrementAndGet();
+            return Collections.singletonList("member1");
+        });
+    }
+}
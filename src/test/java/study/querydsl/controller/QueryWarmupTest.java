@@ -0,0 +1,69 @@
+package study.querydsl.controller;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberCountCache;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchPlanCache;
+import study.querydsl.repository.support.CountCacheProperties;
+import study.querydsl.repository.support.QueryMetrics;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueryWarmupTest {
+
+    private final MemberRepository memberRepository = mock(MemberRepository.class);
+    private final QueryMetrics queryMetrics = new QueryMetrics(new SimpleMeterRegistry());
+
+    private final QueryWarmup warmup = new QueryWarmup(memberRepository, mock(MemberJpaRepository.class),
+            new MemberCountCache(new CountCacheProperties()), mock(JPAQueryFactory.class, RETURNS_DEEP_STUBS),
+            mock(MemberSearchPlanCache.class), mock(EntityManager.class, RETURNS_DEEP_STUBS), queryMetrics,
+            mock(PlatformTransactionManager.class));
+
+    @Test
+    public void upAfterWarmup() {
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        warmup.warmup();
+
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    public void warmupWithoutMetrics() {
+        // 워밍업 호출은 QueryMetricsAspect/SingleFlightAspect 가 기록하지 않는 범위에서 실행된다.
+        when(memberRepository.search(any(MemberSearchCondition.class))).thenAnswer(invocation -> {
+            assertThat(queryMetrics.isSuppressed()).isTrue();
+            return Collections.emptyList();
+        });
+
+        warmup.warmup();
+
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(queryMetrics.isSuppressed()).isFalse();
+    }
+
+    @Test
+    public void downWhenWarmupFails() {
+        when(memberRepository.search(any(MemberSearchCondition.class)))
+                .thenThrow(new IllegalStateException("db unavailable"));
+
+        // 예외가 기동(ApplicationReadyEvent 리스너) 밖으로 나가지 않는다.
+        warmup.warmup();
+
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.DOWN);
+        assertThat(warmup.health().getDetails()).containsEntry("warmup", "failed");
+    }
+}
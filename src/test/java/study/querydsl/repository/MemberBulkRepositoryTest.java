@@ -0,0 +1,64 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberCreateDto;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ 테스트 프로필의 hibernate.jdbc.batch_size 는 100 이므로 250 건은 세 번에 나눠 flush/clear 된다.
+ */
+@SpringBootTest
+@Transactional
+class MemberBulkRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    @Test
+    public void saveAllAcrossChunks(){
+        em.persist(new Team("bulkTeamA"));
+        em.flush();
+        em.clear();
+
+        List<MemberCreateDto> members = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            String teamName = i % 5 == 0 ? null : (i % 2 == 0 ? "bulkTeamA" : "bulkTeamB");
+            members.add(new MemberCreateDto("bulk" + i, i % 100, teamName));
+        }
+
+        assertThat(memberBulkRepository.saveAll(members)).isEqualTo(250);
+
+        // 있는 팀은 그대로 쓰고, 없는 팀은 한번만 만든다.
+        assertThat(teamCount("bulkTeamA")).isEqualTo(1);
+        assertThat(teamCount("bulkTeamB")).isEqualTo(1);
+
+        assertThat(memberCount("bulkTeamA")).isEqualTo(100);
+        assertThat(memberCount("bulkTeamB")).isEqualTo(100);
+        assertThat(em.createQuery("select count(m) from Member m where m.username like 'bulk%' and m.team is null",
+                Long.class).getSingleResult()).isEqualTo(50);
+    }
+
+    private long teamCount(String name) {
+        return em.createQuery("select count(t) from Team t where t.name = :name", Long.class)
+                .setParameter("name", name)
+                .getSingleResult();
+    }
+
+    private long memberCount(String teamName) {
+        return em.createQuery("select count(m) from Member m where m.team.name = :name", Long.class)
+                .setParameter("name", teamName)
+                .getSingleResult();
+    }
+}
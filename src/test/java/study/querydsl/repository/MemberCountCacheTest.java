@@ -0,0 +1,79 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.support.CountCacheProperties;
+import study.querydsl.repository.support.QueryMetrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ 테스트 프로필은 count 캐시를 끄므로(ttl-seconds: 0) 기본 설정으로 직접 만든다.
+ */
+class MemberCountCacheTest {
+
+    private final MemberCountCache countCache = new MemberCountCache(new CountCacheProperties());
+    private final QueryMetrics queryMetrics = new QueryMetrics(new SimpleMeterRegistry());
+    private final AtomicInteger counts = new AtomicInteger();
+
+    @Test
+    public void blankConditionSharesKeyWithNull() {
+        MemberSearchCondition empty = new MemberSearchCondition();
+        MemberSearchCondition blank = new MemberSearchCondition();
+        blank.setUsername(" ");
+        blank.setTeamName("");
+
+        assertThat(count(empty)).isEqualTo(10);
+        assertThat(count(blank)).isEqualTo(10);
+        assertThat(counts.get()).isEqualTo(1);
+
+        // 다른 조건은 다른 키
+        MemberSearchCondition teamA = new MemberSearchCondition();
+        teamA.setTeamName("teamA");
+        count(teamA);
+        assertThat(counts.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void secondPageWithoutCount() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        List<String> fullPage = Arrays.asList("member1", "member2");
+
+        Page<String> first = page(condition, fullPage, 0);
+        Page<String> second = page(condition, fullPage, 1);
+
+        assertThat(first.getTotalElements()).isEqualTo(10);
+        assertThat(second.getTotalElements()).isEqualTo(10);
+        assertThat(counts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidateAllForcesRecount() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        count(condition);
+        countCache.invalidateAll();
+        count(condition);
+
+        assertThat(counts.get()).isEqualTo(2);
+    }
+
+    private long count(MemberSearchCondition condition) {
+        return countCache.getCount(condition, () -> {
+            counts.incrementAndGet();
+            return 10;
+        });
+    }
+
+    private Page<String> page(MemberSearchCondition condition, List<String> content, int page) {
+        return queryMetrics.getPage(content, PageRequest.of(page, content.size()), () -> count(condition));
+    }
+}
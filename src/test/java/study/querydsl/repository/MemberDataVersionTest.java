@@ -0,0 +1,119 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+import study.querydsl.controller.MemberResponseCache;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ post-commit 리스너는 커밋된 변경만 반영하므로 이 테스트는 트랜잭션을 직접 커밋하고 마지막에 지운다.
+ */
+@SpringBootTest
+class MemberDataVersionTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberResponseCache responseCache;
+
+    @Autowired
+    MemberDataVersion dataVersion;
+
+    @Test
+    public void entityUpdateChangesETag(){
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        Long[] ids = tx.execute(status -> {
+            Team team = new Team("versionTeam");
+            em.persist(team);
+            Member member = new Member("version1", 10, team);
+            em.persist(member);
+            return new Long[]{team.getId(), member.getId()};
+        });
+
+        try {
+            String before = eTag();
+
+            // dirty checking 으로 바뀐 회원
+            tx.execute(status -> {
+                em.find(Member.class, ids[1]).setAge(11);
+                return null;
+            });
+            String afterMemberUpdate = eTag();
+            assertThat(afterMemberUpdate).isNotEqualTo(before);
+
+            // 팀 이름 변경
+            tx.execute(status -> {
+                em.find(Team.class, ids[0]).setName("versionTeam2");
+                return null;
+            });
+            assertThat(eTag()).isNotEqualTo(afterMemberUpdate);
+        } finally {
+            tx.execute(status -> {
+                em.remove(em.find(Member.class, ids[1]));
+                em.remove(em.find(Team.class, ids[0]));
+                return null;
+            });
+        }
+    }
+
+    @Test
+    public void oneBumpPerTransaction(){
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        long before = counter();
+
+        Long teamId = tx.execute(status -> {
+            Team team = new Team("versionTeamBatch");
+            em.persist(team);
+            for (int i = 0; i < 3; i++) {
+                em.persist(new Member("versionBatch" + i, 10 + i, team));
+            }
+            return team.getId();
+        });
+
+        try {
+            // 엔티티 이벤트 4건(팀 1, 회원 3)이어도 커밋 한번에 한번만 올라간다.
+            assertThat(counter()).isEqualTo(before + 1);
+        } finally {
+            tx.execute(status -> {
+                em.createQuery("delete from Member m where m.team.id = :teamId")
+                        .setParameter("teamId", teamId)
+                        .executeUpdate();
+                em.remove(em.find(Team.class, teamId));
+                return null;
+            });
+        }
+    }
+
+    private long counter() {
+        String current = dataVersion.current();
+        return Long.parseLong(current.substring(current.lastIndexOf('.') + 1));
+    }
+
+    private String eTag() {
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest("GET", "/v2/members"),
+                new MockHttpServletResponse());
+        return responseCache.get("v2", new MemberSearchCondition(), PageRequest.of(0, 10), request,
+                Collections::emptyList)
+                .getHeaders()
+                .getETag();
+    }
+}
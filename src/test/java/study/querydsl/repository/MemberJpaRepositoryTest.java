@@ -7,6 +7,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
@@ -78,4 +79,82 @@ class MemberJpaRepositoryTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void searchPlanTest(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(" ");
+        condition.setTeamName("teamB");
+        condition.setAgeGoe(35);
+
+        // 미리 만든 JPQL 과 Querydsl 로 만든 쿼리의 결과가 같아야 한다.
+        assertThat(memberJpaRepository.search(condition))
+                .isEqualTo(memberJpaRepository.searchByBuilder(condition))
+                .extracting("username")
+                .containsExactly("member4");
+    }
+
+    @Test
+    public void searchRowsTest(){
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        // SQL 로 직접 매핑한 결과가 Querydsl 프로젝션 결과와 같아야 한다. (팀이 없으면 teamId 는 null)
+        assertThat(memberJpaRepository.search(condition))
+                .containsExactlyInAnyOrderElementsOf(memberJpaRepository.searchByBuilder(condition))
+                .extracting("teamId")
+                .containsOnly(teamA.getId(), null);
+    }
+
+    @Test
+    public void usernameMatchTest(){
+        em.persist(new Member("member1", 10));
+        em.persist(new Member("Member2", 20));
+        em.persist(new Member("member10", 30));
+        em.persist(new Member("other", 40));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+        condition.setUsernameMatch(UsernameMatch.PREFIX);
+
+        assertThat(memberJpaRepository.search(condition))
+                .extracting("username")
+                .containsExactlyInAnyOrder("member1", "member10");
+        assertThat(memberJpaRepository.searchByBuilder(condition))
+                .extracting("username")
+                .containsExactlyInAnyOrder("member1", "member10");
+
+        condition.setUsername("MEMBER");
+        condition.setUsernameMatch(UsernameMatch.PREFIX_IGNORE_CASE);
+
+        assertThat(memberJpaRepository.search(condition))
+                .extracting("username")
+                .containsExactlyInAnyOrder("member1", "Member2", "member10");
+        assertThat(memberJpaRepository.searchByBuilder(condition))
+                .extracting("username")
+                .containsExactlyInAnyOrder("member1", "Member2", "member10");
+
+        condition.setUsername("member2");
+        condition.setUsernameMatch(UsernameMatch.IGNORE_CASE);
+
+        assertThat(memberJpaRepository.search(condition))
+                .extracting("username")
+                .containsExactly("Member2");
+    }
+
+}
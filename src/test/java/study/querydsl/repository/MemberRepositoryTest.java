@@ -5,7 +5,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberCursor;
+import study.querydsl.dto.MemberKeysetPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
@@ -98,6 +101,100 @@ public class MemberRepositoryTest {
         assertThat(result.getSize()).isEqualTo(3);
     }
 
+    @Test
+    public void searchPageComplexSorted(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 20, teamA));
+        em.persist(new Member("member2", 40, teamA));
+        em.persist(new Member("member3", 20, teamB));
+        em.persist(new Member("member4", 10, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        Sort byAge = Sort.by(Sort.Direction.DESC, "age");
+
+        // 같은 나이(member1, member3)는 id 순
+        Page<MemberTeamDto> first = memberRepository.searchPageComplex(condition, PageRequest.of(0, 2, byAge));
+        Page<MemberTeamDto> second = memberRepository.searchPageComplex(condition, PageRequest.of(1, 2, byAge));
+
+        assertThat(first.getContent()).extracting("username")
+                .containsExactly("member2", "member1");
+        assertThat(second.getContent()).extracting("username")
+                .containsExactly("member3", "member4");
+        assertThat(second.getContent()).extracting("teamName")
+                .containsExactly("teamB", "teamB");
+
+        // member 컬럼이 아닌 정렬 키는 무시하고 id 순으로 읽는다.
+        Page<MemberTeamDto> byTeamName = memberRepository.searchPageComplex(condition,
+                PageRequest.of(0, 2, Sort.by("teamName")));
+        assertThat(byTeamName.getContent()).extracting("username")
+                .containsExactly("member1", "member2");
+    }
+
+    @Test
+    public void searchKeyset(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1", 40, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 20, teamB);
+        Member member4 = new Member("member4", 10, teamB);
+
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        MemberKeysetPage first = memberRepository.searchKeyset(condition, null, true, 3);
+        assertThat(first.getContent()).extracting("username")
+                .containsExactly("member4", "member2", "member3");
+        assertThat(first.isHasNext()).isTrue();
+
+        MemberKeysetPage second = memberRepository.searchKeyset(condition, MemberCursor.parse(first.getNext()), true, 3);
+        assertThat(second.getContent()).extracting("username")
+                .containsExactly("member1");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNext()).isNull();
+    }
+
+    @Test
+    public void bulkAddAge(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 30, teamB);
+
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        long count = memberRepository.bulkAddAge(condition, 1);
+
+        // em.flush(), em.clear() 없이도 변경된 값이 조회되어야 한다.
+        assertThat(count).isEqualTo(2);
+        assertThat(memberRepository.findById(member1.getId()).get().getAge()).isEqualTo(11);
+        assertThat(memberRepository.findById(member2.getId()).get().getAge()).isEqualTo(21);
+        assertThat(em.contains(member3)).isTrue();
+    }
+
     @Test
     public void querydslPredicateExecutorTest(){
 
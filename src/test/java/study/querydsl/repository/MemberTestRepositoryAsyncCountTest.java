@@ -0,0 +1,102 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.QueryMetrics;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ 비동기 count 는 별도 EntityManager(트랜잭션 밖)에서 실행되므로 이 테스트는 데이터를 직접 커밋하고 마지막에 지운다.
+ */
+@SpringBootTest
+class MemberTestRepositoryAsyncCountTest {
+
+    private static final String QUERY = "MemberTestRepository.applyPaginationAsync";
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @Autowired
+    MeterRegistry registry;
+
+    TransactionTemplate tx;
+    Long teamId;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        teamId = tx.execute(status -> {
+            Team team = new Team("asyncCountTeam");
+            em.persist(team);
+            for (int i = 0; i < 4; i++) {
+                em.persist(new Member("asyncCount" + i, 10 * i, team));
+            }
+            return team.getId();
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.execute(status -> {
+            em.createQuery("delete from Member m where m.team.id = :teamId")
+                    .setParameter("teamId", teamId)
+                    .executeUpdate();
+            em.remove(em.find(Team.class, teamId));
+            return null;
+        });
+    }
+
+    @Test
+    public void countSkipped(){
+        double skipped = count("skipped");
+
+        // 첫 페이지가 pageSize 보다 작으면 total 은 content 크기이고 count 결과는 사용하지 않는다.
+        Page<Member> result = memberTestRepository.applyPaginationAsync(condition(), PageRequest.of(0, 10));
+
+        assertThat(result.getContent()).hasSize(4);
+        assertThat(result.getTotalElements()).isEqualTo(4);
+        assertThat(count("skipped")).isEqualTo(skipped + 1);
+    }
+
+    @Test
+    public void countUsed(){
+        double executed = count("executed");
+
+        Page<Member> result = memberTestRepository.applyPaginationAsync(condition(), PageRequest.of(0, 2));
+
+        assertThat(result.getContent()).hasSize(2);
+        assertThat(result.getTotalElements()).isEqualTo(4);
+        assertThat(result.getTotalPages()).isEqualTo(2);
+        assertThat(count("executed")).isEqualTo(executed + 1);
+    }
+
+    private MemberSearchCondition condition() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("asyncCountTeam");
+        return condition;
+    }
+
+    private double count(String result) {
+        return registry.counter(QueryMetrics.COUNT, "query", QUERY, "result", result).count();
+    }
+}
@@ -0,0 +1,112 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberTestRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @PersistenceUnit
+    EntityManagerFactory emf;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @BeforeEach
+    public void before(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void searchWithFetchPlan(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        Page<Member> result = memberTestRepository.searchWithFetchPlan(condition, PageRequest.of(0, 1),
+                "team", "team.members");
+
+        assertThat(result.getTotalElements()).isEqualTo(2);
+        Member findMember = result.getContent().get(0);
+        assertThat(emf.getPersistenceUnitUtil().isLoaded(findMember.getTeam())).as("team fetch join").isTrue();
+        assertThat(emf.getPersistenceUnitUtil().isLoaded(findMember.getTeam(), "members")).as("team.members 배치 로딩").isTrue();
+        assertThat(findMember.getTeam().getMembers()).hasSize(2);
+    }
+
+    @Test
+    public void searchWithFetchPlanReadOnly(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        Page<Member> result = memberTestRepository.searchWithFetchPlan(condition, PageRequest.of(0, 2), true, "team");
+
+        assertThat(result.getContent()).hasSize(2);
+        assertThat(result.getContent()).allSatisfy(findMember ->
+                assertThat(emf.getPersistenceUnitUtil().isLoaded(findMember.getTeam())).as("team fetch join").isTrue());
+    }
+
+    @Test
+    public void applyDeferredPagination(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        Page<Member> result = memberTestRepository.applyDeferredPagination(condition,
+                PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "age")));
+
+        assertThat(result.getTotalElements()).isEqualTo(3);
+        assertThat(result.getContent()).extracting("username")
+                .containsExactly("member4", "member3");
+        assertThat(emf.getPersistenceUnitUtil().isLoaded(result.getContent().get(0).getTeam())).as("team fetch join").isTrue();
+
+        Page<Member> last = memberTestRepository.applyDeferredPagination(condition,
+                PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "age")));
+        assertThat(last.getContent()).extracting("username")
+                .containsExactly("member2");
+    }
+
+    @Test
+    public void applyDeferredPaginationTieBreaker(){
+        // 같은 팀 이름끼리는 id 순으로 페이지 경계가 정해진다.
+        Sort byTeamName = Sort.by(Sort.Direction.DESC, "team.name");
+
+        Page<Member> first = memberTestRepository.applyDeferredPagination(new MemberSearchCondition(),
+                PageRequest.of(0, 2, byTeamName));
+        Page<Member> second = memberTestRepository.applyDeferredPagination(new MemberSearchCondition(),
+                PageRequest.of(1, 2, byTeamName));
+
+        assertThat(first.getContent()).extracting("username")
+                .containsExactly("member3", "member4");
+        assertThat(second.getContent()).extracting("username")
+                .containsExactly("member1", "member2");
+    }
+}
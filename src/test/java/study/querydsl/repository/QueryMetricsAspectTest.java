@@ -0,0 +1,94 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.MemberKeysetPage;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.support.QueryMetrics;
+import study.querydsl.repository.support.QueryMetricsAspect;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryMetricsAspectTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final QueryMetrics queryMetrics = new QueryMetrics(registry);
+    private final MetricsProbeRepository repository = proxy(new MetricsProbeRepository(queryMetrics));
+
+    @Test
+    public void timerAndRows() {
+        repository.findAll();
+        repository.findAll();
+        repository.keyset();
+
+        assertThat(registry.get(QueryMetrics.QUERY)
+                .tag("query", "MetricsProbeRepository.findAll")
+                .tag("exception", "none")
+                .timer().count()).isEqualTo(2);
+        assertThat(registry.get(QueryMetrics.ROWS)
+                .tag("query", "MetricsProbeRepository.findAll")
+                .summary().totalAmount()).isEqualTo(6);
+        // List/Page 가 아닌 결과는 RowCounted 로 센다.
+        assertThat(registry.get(QueryMetrics.ROWS)
+                .tag("query", "MetricsProbeRepository.keyset")
+                .summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    public void countExecutedOrSkipped() {
+        // 첫 페이지가 pageSize 보다 작으면 count 를 실행하지 않는다.
+        assertThat(repository.page(PageRequest.of(0, 10)).getTotalElements()).isEqualTo(3);
+        assertThat(repository.page(PageRequest.of(0, 3)).getTotalElements()).isEqualTo(100);
+
+        assertThat(count("skipped")).isEqualTo(1);
+        assertThat(count("executed")).isEqualTo(1);
+        assertThat(registry.get(QueryMetrics.ROWS)
+                .tag("query", "MetricsProbeRepository.page")
+                .summary().totalAmount()).isEqualTo(6);
+    }
+
+    private double count(String result) {
+        return registry.get(QueryMetrics.COUNT)
+                .tag("query", "MetricsProbeRepository.page")
+                .tag("result", result)
+                .counter().count();
+    }
+
+    private MetricsProbeRepository proxy(MetricsProbeRepository target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new QueryMetricsAspect(queryMetrics));
+        return factory.getProxy();
+    }
+}
+
+// QueryMetricsAspect 포인트컷(repository 패키지의 *Repository*)에 걸리는 테스트용 리포지토리
+class MetricsProbeRepository {
+
+    private final QueryMetrics queryMetrics;
+
+    MetricsProbeRepository(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+
+    public List<String> findAll() {
+        return Arrays.asList("member1", "member2", "member3");
+    }
+
+    public MemberKeysetPage keyset() {
+        List<MemberTeamDto> content = Arrays.asList(new MemberTeamDto(1L, "member1", 10, null, null),
+                new MemberTeamDto(2L, "member2", 20, null, null));
+        return new MemberKeysetPage(content, 2, false, null);
+    }
+
+    public Page<String> page(Pageable pageable) {
+        return queryMetrics.getPage(findAll(), pageable, () -> 100);
+    }
+}
@@ -0,0 +1,89 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ post-commit 리스너는 커밋된 변경만 반영하므로 이 테스트는 트랜잭션을 직접 커밋하고 마지막에 지운다.
+ */
+@SpringBootTest
+class TeamMemberStatsTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    TeamMemberStats teamMemberStats;
+
+    @Test
+    public void incrementalStats(){
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        Long teamId = tx.execute(status -> {
+            Team team = new Team("statsTeam");
+            em.persist(team);
+            em.persist(new Member("stats1", 10, team));
+            em.persist(new Member("stats2", 20, team));
+            em.persist(new Member("stats3", 40, team));
+            return team.getId();
+        });
+
+        try {
+            TeamStatsDto stats = teamMemberStats.get(teamId);
+            assertThat(stats.getCount()).isEqualTo(3);
+            assertThat(stats.getAgeSum()).isEqualTo(70);
+            assertThat(stats.getAgeMax()).isEqualTo(40);
+            assertThat(stats.getAgeMin()).isEqualTo(10);
+
+            // 최대 나이 회원이 빠지면 max 도 바뀐다.
+            tx.execute(status -> {
+                Member oldest = em.createQuery("select m from Member m where m.username = 'stats3'", Member.class)
+                        .getSingleResult();
+                em.remove(oldest);
+                Member youngest = em.createQuery("select m from Member m where m.username = 'stats1'", Member.class)
+                        .getSingleResult();
+                youngest.setAge(15);
+                return null;
+            });
+
+            stats = teamMemberStats.get(teamId);
+            assertThat(stats.getCount()).isEqualTo(2);
+            assertThat(stats.getAgeAvg()).isEqualTo(17.5);
+            assertThat(stats.getAgeMax()).isEqualTo(20);
+            assertThat(stats.getAgeMin()).isEqualTo(15);
+
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setTeamName("statsTeam");
+            assertThat(teamMemberStats.countTeamOnly(condition)).hasValue(2);
+
+            // stale 이면 다시 읽기를 기다리지 않고 count 쿼리로 넘긴다.
+            teamMemberStats.invalidate();
+            assertThat(teamMemberStats.countTeamOnly(condition)).isEmpty();
+            assertThat(teamMemberStats.get(teamId).getCount()).isEqualTo(2);
+            assertThat(teamMemberStats.countTeamOnly(condition)).hasValue(2);
+        } finally {
+            tx.execute(status -> {
+                em.createQuery("delete from Member m where m.team.id = :teamId")
+                        .setParameter("teamId", teamId)
+                        .executeUpdate();
+                em.remove(em.find(Team.class, teamId));
+                return null;
+            });
+            teamMemberStats.invalidate();
+        }
+    }
+}
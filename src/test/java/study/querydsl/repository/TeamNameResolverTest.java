@@ -0,0 +1,113 @@
+package study.querydsl.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ 2차 캐시(READ_WRITE)는 커밋된 뒤에 채워지므로 이 테스트는 트랜잭션을 직접 커밋하고 마지막에 지운다.
+ 실행된 SQL 수는 Hibernate Statistics 의 prepared statement 수로 확인한다.
+ */
+@SpringBootTest
+class TeamNameResolverTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    TeamNameResolver teamNameResolver;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    TransactionTemplate tx;
+    Statistics statistics;
+    Long teamId;
+    Long memberId;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        Long[] ids = tx.execute(status -> {
+            Team team = new Team("cacheTeam");
+            em.persist(team);
+            Member member = new Member("cacheMember", 10, team);
+            em.persist(member);
+            return new Long[]{team.getId(), member.getId()};
+        });
+        teamId = ids[0];
+        memberId = ids[1];
+
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    public void after(){
+        statistics.setStatisticsEnabled(false);
+        tx.execute(status -> {
+            em.remove(em.find(Member.class, memberId));
+            em.remove(em.find(Team.class, teamId));
+            return null;
+        });
+    }
+
+    @Test
+    public void teamFromSecondLevelCache(){
+        tx.execute(status -> {
+            Member member = em.find(Member.class, memberId);
+            long before = statistics.getPrepareStatementCount();
+            assertThat(member.getTeam().getName()).isEqualTo("cacheTeam");
+            assertThat(statistics.getPrepareStatementCount()).as("team 은 2차 캐시에서").isEqualTo(before);
+            return null;
+        });
+    }
+
+    @Test
+    public void teamNameFromQueryCache(){
+        assertThat(resolve("cacheTeam")).containsExactly(teamId);
+
+        long before = statistics.getPrepareStatementCount();
+        assertThat(resolve("cacheTeam")).containsExactly(teamId);
+        assertThat(statistics.getPrepareStatementCount()).as("쿼리 캐시").isEqualTo(before);
+
+        // Team 이 바뀌면 쿼리 캐시가 무효화되어 다시 조회한다.
+        tx.execute(status -> {
+            em.find(Team.class, teamId).setName("cacheTeam2");
+            return null;
+        });
+        before = statistics.getPrepareStatementCount();
+        assertThat(resolve("cacheTeam")).isEmpty();
+        assertThat(statistics.getPrepareStatementCount()).isGreaterThan(before);
+
+        // 없는 팀 이름은 아무것도 조회되지 않는다.
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("cacheTeam");
+        assertThat(memberJpaRepository.searchByBuilder(condition)).isEmpty();
+    }
+
+    private List<Long> resolve(String teamName) {
+        return tx.execute(status -> teamNameResolver.findIdsByName(teamName));
+    }
+}
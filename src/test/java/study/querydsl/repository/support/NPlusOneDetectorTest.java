@@ -0,0 +1,74 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberTestRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/*
+ 테스트 프로필은 strict: true, threshold: 10 (같은 select 가 10번을 넘으면 예외)
+ default_batch_fetch_size: 1 이므로 member.getTeam() 지연 로딩은 팀마다 select 한번이다.
+ */
+@SpringBootTest
+@Transactional
+class NPlusOneDetectorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @Test
+    public void strictModeFailsOverThreshold(){
+        List<Member> members = membersWithOwnTeam(12);
+
+        Throwable thrown = catchThrowable(() -> members.forEach(member -> member.getTeam().getName()));
+
+        NPlusOneDetectedException detected = findCause(thrown);
+        assertThat(detected).as("NPlusOneDetectedException").isNotNull();
+        assertThat(detected.getMessage())
+                .contains("11번")
+                .contains("trigger=MemberTestRepository.basicSelectFrom");
+    }
+
+    @Test
+    public void underThreshold(){
+        List<Member> members = membersWithOwnTeam(5);
+
+        members.forEach(member -> member.getTeam().getName());
+
+        assertThat(members).extracting("team.name")
+                .containsExactlyInAnyOrder("npTeam0", "npTeam1", "npTeam2", "npTeam3", "npTeam4");
+    }
+
+    private List<Member> membersWithOwnTeam(int count) {
+        for (int i = 0; i < count; i++) {
+            Team team = new Team("npTeam" + i);
+            em.persist(team);
+            em.persist(new Member("npMember" + i, i, team));
+        }
+        em.flush();
+        em.clear();
+        return memberTestRepository.basicSelectFrom();
+    }
+
+    // 지연 로딩 중 던져진 예외는 Hibernate/JPA 예외로 감싸질 수 있다.
+    private NPlusOneDetectedException findCause(Throwable thrown) {
+        for (Throwable cause = thrown; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NPlusOneDetectedException) {
+                return (NPlusOneDetectedException) cause;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ H2 인메모리 DB 두 개(replica1, replica2)와 primary 로 라우팅을 확인한다.
+ IFEXISTS=TRUE 인 replica 는 DB 가 만들어지기 전까지 커넥션을 얻지 못한다. (장애 상황)
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        if (routingDataSource != null) {
+            routingDataSource.close();
+        }
+    }
+
+    @Test
+    public void routeByReadOnly() throws SQLException {
+        routingDataSource = new ReplicaRoutingDataSource(h2("primary"),
+                Arrays.asList(h2("replica1"), h2("replica2")), 60_000, 1);
+
+        assertThat(urlOf(routingDataSource)).contains("primary");
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(Arrays.asList(urlOf(routingDataSource), urlOf(routingDataSource)))
+                .anyMatch(url -> url.contains("replica1"))
+                .anyMatch(url -> url.contains("replica2"));
+    }
+
+    @Test
+    public void failover() throws SQLException {
+        routingDataSource = new ReplicaRoutingDataSource(h2("primary"),
+                Arrays.asList(h2("failover1;IFEXISTS=TRUE"), h2("failover2;IFEXISTS=TRUE")), 60_000, 1);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // 모든 replica 가 죽어 있으면 primary 로 읽는다.
+        assertThat(urlOf(routingDataSource)).contains("primary");
+        assertThat(routingDataSource.getHealthyReplicaCount()).isEqualTo(0);
+
+        try (Connection keepAlive = DriverManager.getConnection("jdbc:h2:mem:failover2;DB_CLOSE_DELAY=-1", "sa", "")) {
+            routingDataSource.checkReplicas();
+
+            assertThat(routingDataSource.getHealthyReplicaCount()).isEqualTo(1);
+            assertThat(urlOf(routingDataSource)).contains("failover2");
+            assertThat(urlOf(routingDataSource)).contains("failover2");
+        }
+    }
+
+    private DataSource h2(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name, "sa", "");
+    }
+
+    private String urlOf(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getURL();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+
+    @Test
+    public void shareInFlightCall() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger sharedCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            Future<Integer> leader = executor.submit(() -> execute("key", () -> {
+                started.countDown();
+                release.await();
+                return calls.incrementAndGet();
+            }, sharedCount));
+            started.await();
+
+            Future<Integer> follower = executor.submit(() -> execute("key", calls::incrementAndGet, sharedCount));
+            // 다른 키는 기다리지 않고 바로 실행된다.
+            assertThat(execute("other", () -> 100, sharedCount)).isEqualTo(100);
+
+            while (sharedCount.get() == 0) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            assertThat(leader.get()).isEqualTo(1);
+            assertThat(follower.get()).isEqualTo(1);
+            assertThat(calls.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 끝난 호출은 남아 있지 않는다.
+        assertThat(execute("key", () -> 2, sharedCount)).isEqualTo(2);
+    }
+
+    private Integer execute(String key, SingleFlight.Call<Integer> call, AtomicInteger sharedCount) throws Exception {
+        try {
+            return singleFlight.execute(key, call, shared -> {
+                if (shared) {
+                    sharedCount.incrementAndGet();
+                }
+            });
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}